@@ -0,0 +1,21 @@
+package de.teiesti.postie;
+
+/**
+ * A {@link Classifier} assigns a key to a {@link Letter}. {@link Letter}s that are assigned equal keys belong to the
+ * same class. Any implementation should be thread-safe and should assign the same key to a {@link Letter} every time
+ * it is asked.
+ *
+ * @param <Letter> type of the letters
+ * @param <Key> type of the keys
+ */
+public interface Classifier<Letter, Key> {
+
+	/**
+	 * Returns the key of the given {@link Letter}. The key may be {@code null}.
+	 *
+	 * @param letter the {@link Letter} to classify
+	 * @return the key of the {@link Letter}
+	 */
+	public Key classify(Letter letter);
+
+}
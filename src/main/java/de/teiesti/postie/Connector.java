@@ -0,0 +1,21 @@
+package de.teiesti.postie;
+
+import java.io.IOException;
+
+/**
+ * A {@link Connector} establishes connections for a {@link Postman} that reconnects on its own (see
+ * {@link Postman#reconnect(Connector, long, long, java.util.concurrent.TimeUnit)}). Each call of {@link #connect()}
+ * must return a new {@link Link} to the same opposite side.
+ */
+public interface Connector {
+
+	/**
+	 * Establishes a new connection.
+	 *
+	 * @return the {@link Link} of the new connection
+	 *
+	 * @throws IOException if the connection cannot be established at the moment
+	 */
+	public Link connect() throws IOException;
+
+}
@@ -0,0 +1,292 @@
+package de.teiesti.postie;
+
+import org.pmw.tinylog.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link FairExecutor} runs the jobs of many connections on a fixed number of {@link Thread}s. Each connection gets
+ * a lane of its own (see {@link #lane()}), which is an {@link ExecutorService} that queues the jobs of this connection
+ * only. The {@link Thread}s service the lanes that have jobs in turns, one job per lane and turn. Thus a connection
+ * that submits a flood of jobs gets no more than its share while others are waiting, but all {@link Thread}s if no
+ * other connection has anything to do.<br>
+ * <br>
+ * A lane holds at most a given number of waiting jobs. Submitting another one blocks until a {@link Thread} took a job
+ * from this lane. The submitting {@link Thread} is usually the one that receives the letters of the connection, so a
+ * noisy client is slowed down until it gets no more than its share.<br>
+ * <br>
+ * A lane is shut down when its connection has ended. A {@link FairExecutor} that is shut down does not open any new
+ * lane. Its {@link Thread}s end as soon as every lane is shut down and no job is left.<br>
+ * <br>
+ * All provided methods are thread-safe.
+ */
+final class FairExecutor {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition work = lock.newCondition();
+
+	// the lanes that have waiting jobs in the order they are serviced
+	private final Deque<Lane> ready = new ArrayDeque<>();
+	private final int queueDepth;
+
+	private final Thread[] workers;
+	private int open = 0;	// the number of lanes that were not shut down
+	private boolean shutdown = false;
+
+	/**
+	 * Creates a new {@link FairExecutor} and starts its {@link Thread}s.
+	 *
+	 * @param threads the number of {@link Thread}s
+	 * @param queueDepth the maximal number of waiting jobs per lane
+	 *
+	 * @throws IllegalArgumentException if {@code threads} or {@code queueDepth} is less than {@code 1}
+	 */
+	FairExecutor(int threads, int queueDepth) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads < 1");
+		if (queueDepth < 1)
+			throw new IllegalArgumentException("queueDepth < 1");
+
+		this.queueDepth = queueDepth;
+
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker();
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Opens a new lane.
+	 *
+	 * @return the lane
+	 *
+	 * @throws IllegalStateException if this {@link FairExecutor} was shut down
+	 */
+	ExecutorService lane() {
+		lock.lock();
+		try {
+			if (shutdown)
+				throw new IllegalStateException("cannot open a lane because this executor was shut down");
+
+			open++;
+			return new Lane();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Shuts this {@link FairExecutor} down. The lanes that are open stay usable until they are shut down themselves.
+	 */
+	void shutdown() {
+		lock.lock();
+		try {
+			shutdown = true;
+			work.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until all {@link Thread}s of this {@link FairExecutor} have ended or the given time has elapsed.
+	 *
+	 * @param timeout the maximal time to wait
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return {@code true} if all {@link Thread}s have ended
+	 *
+	 * @throws InterruptedException if the waiting {@link Thread} was interrupted
+	 */
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread worker : workers) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining > 0)
+				TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+			if (worker.isAlive())
+				return false;
+		}
+		return true;
+	}
+
+	private class Worker extends Thread {
+		@Override
+		public void run() {
+			while (true) {
+				Lane lane;
+				Runnable job;
+
+				lock.lock();
+				try {
+					while (ready.isEmpty()) {
+						if (shutdown && open == 0)
+							return;
+						work.awaitUninterruptibly();
+					}
+
+					// one job per turn: the lane queues up again behind all others
+					lane = ready.removeFirst();
+					job = lane.take();
+					if (lane.jobs.isEmpty())
+						lane.scheduled = false;
+					else
+						ready.addLast(lane);
+				} finally {
+					lock.unlock();
+				}
+
+				try {
+					job.run();
+				} catch (RuntimeException e) {
+					Logger.warn("a job failed: {0}", e);
+				} finally {
+					lane.finished();
+				}
+			}
+		}
+	}
+
+	private class Lane extends AbstractExecutorService {
+
+		private final Deque<Runnable> jobs = new ArrayDeque<>();
+		private final Condition notFull = lock.newCondition();
+		private final Condition terminated = lock.newCondition();
+
+		// set while this lane is in the ready queue
+		private boolean scheduled = false;
+		private int running = 0;
+		private boolean shut = false;
+
+		@Override
+		public void execute(Runnable command) {
+			if (command == null)
+				throw new NullPointerException("command == null");
+
+			lock.lock();
+			try {
+				// the job was announced already, e.g. to a phaser, so waiting for room cannot be given up
+				boolean interrupted = false;
+				while (!shut && jobs.size() >= queueDepth) {
+					try {
+						notFull.await();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) Thread.currentThread().interrupt();
+
+				if (shut)
+					throw new RejectedExecutionException("cannot execute a job because this lane was shut down");
+
+				jobs.addLast(command);
+				if (!scheduled) {
+					scheduled = true;
+					ready.addLast(this);
+					work.signal();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		// requires the lock and a waiting job
+		private Runnable take() {
+			running++;
+			notFull.signal();
+			return jobs.removeFirst();
+		}
+
+		private void finished() {
+			lock.lock();
+			try {
+				running--;
+				if (isTerminated()) terminated.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			lock.lock();
+			try {
+				if (shut) return;
+
+				shut = true;
+				open--;
+				notFull.signalAll();
+				// a worker may end now
+				work.signalAll();
+				if (isTerminated()) terminated.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			lock.lock();
+			try {
+				List<Runnable> result = new ArrayList<>(jobs);
+				jobs.clear();
+				if (scheduled) {
+					ready.remove(this);
+					scheduled = false;
+				}
+				shutdown();
+				return result;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isShutdown() {
+			lock.lock();
+			try {
+				return shut;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isTerminated() {
+			lock.lock();
+			try {
+				return shut && jobs.isEmpty() && running == 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long nanos = unit.toNanos(timeout);
+			lock.lock();
+			try {
+				while (!isTerminated()) {
+					if (nanos <= 0)
+						return false;
+					nanos = terminated.awaitNanos(nanos);
+				}
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,113 @@
+package de.teiesti.postie;
+
+/**
+ * A {@link FlushPolicy} tells the sending {@link Thread} of a {@link Postman} when to flush. Flushing whenever the
+ * {@link Outbox} runs empty is right for a {@link Postman} that is idle but costs a system call per letter at medium
+ * load, when the next letter arrives a moment after the previous one was written. A {@link FlushPolicy} therefore
+ * lingers briefly if letters were written in short intervals recently, so that the next letters share the flush.<br>
+ * <br>
+ * A {@link FlushPolicy} observes:
+ * <ul>
+ *     <li>the interval between written letters as a moving average: if it exceeds the maximal delay, the load is
+ *     low and a {@link FlushPolicy} does not linger at all.</li>
+ *     <li>weather lingering paid off: if it was in vain repeatedly, e.g. because the opposite side waits for an
+ *     answer before it sends the next request, a {@link FlushPolicy} stops lingering and tries again only now and
+ *     then.</li>
+ * </ul>
+ * No written byte waits longer than the maximal delay for a flush, even if the {@link Outbox} never runs empty.<br>
+ * <br>
+ * A {@link FlushPolicy} is not thread-safe. It is used by the sending {@link Thread} only.
+ */
+final class FlushPolicy {
+
+	// the number of flushes between two attempts to linger while lingering does not pay off
+	private static final int PROBE = 16;
+
+	// the confidence in lingering, which rises if it pays off and falls twice as fast if not
+	private static final int MAX_CONFIDENCE = 4;
+
+	private final long maxDelay;	// in nanoseconds, 0 means that lingering is disabled
+
+	private long interval;	// the moving average in nanoseconds
+	private long lastWritten = -1;
+	private long dirtySince = -1;	// -1 if everything was flushed
+
+	private int confidence = 1;
+	private int skipped = 0;
+
+	/**
+	 * Creates a new {@link FlushPolicy}.
+	 *
+	 * @param maxDelay the maximal time in nanoseconds a written byte waits for a flush or {@code 0} to flush whenever
+	 * the {@link Outbox} runs empty
+	 */
+	FlushPolicy(long maxDelay) {
+		this.maxDelay = maxDelay;
+		this.interval = 2 * maxDelay;
+	}
+
+	/**
+	 * Notes that a letter was written.
+	 *
+	 * @param now the current {@link System#nanoTime()}
+	 */
+	void written(long now) {
+		if (lastWritten != -1) {
+			// an idle period counts like a short one above the maximal delay: the next busy period shows quickly
+			long sample = Math.min(now - lastWritten, 2 * maxDelay);
+			interval += (sample - interval) / 8;
+		}
+		lastWritten = now;
+
+		if (dirtySince == -1)
+			dirtySince = now;
+	}
+
+	/**
+	 * Notes that everything was flushed.
+	 */
+	void flushed() {
+		dirtySince = -1;
+	}
+
+	/**
+	 * Returns weather the oldest byte that was not flushed has waited for the maximal delay.
+	 *
+	 * @param now the current {@link System#nanoTime()}
+	 *
+	 * @return {@code true} if it is time to flush
+	 */
+	boolean overdue(long now) {
+		return maxDelay != 0 && dirtySince != -1 && now - dirtySince >= maxDelay;
+	}
+
+	/**
+	 * Returns how long to wait for the next letter before flushing, given that the {@link Outbox} ran empty.
+	 *
+	 * @param now the current {@link System#nanoTime()}
+	 *
+	 * @return the time to wait in nanoseconds or {@code 0} to flush at once
+	 */
+	long linger(long now) {
+		if (interval >= maxDelay || dirtySince == -1)
+			return 0;
+		if (confidence == 0 && ++skipped % PROBE != 0)
+			return 0;
+
+		// the next letter should come within two intervals, but the oldest byte must not wait too long
+		return Math.max(Math.min(2 * interval, maxDelay - (now - dirtySince)), 0);
+	}
+
+	/**
+	 * Notes weather lingering paid off, i.e. a letter arrived while waiting.
+	 *
+	 * @param arrived {@code true} if a letter arrived
+	 */
+	void lingered(boolean arrived) {
+		if (arrived)
+			confidence = Math.min(confidence + 1, MAX_CONFIDENCE);
+		else
+			confidence = Math.max(confidence - 2, 0);
+	}
+
+}
@@ -0,0 +1,89 @@
+package de.teiesti.postie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link Link} is a bidirectional byte stream between two {@link Postman}s. A {@link Postman} sends and receives
+ * through the {@link Link} that was given to {@link Postman#use(Link)}. The most common {@link Link} is a
+ * {@link java.net.Socket} (see {@link Postman#bind(java.net.Socket)}), but other transports are possible.<br>
+ * <br>
+ * A {@link Postman} uses the output from one {@link Thread} and the input from another. The methods of a {@link Link}
+ * mirror those of a {@link java.net.Socket}.
+ */
+public interface Link {
+
+	/**
+	 * Returns the {@link InputStream} that reads the bytes the opposite side has sent. Calling this method twice
+	 * returns the same {@link InputStream}.
+	 *
+	 * @return the {@link InputStream}
+	 *
+	 * @throws IOException if the {@link InputStream} cannot be provided
+	 */
+	public InputStream getInputStream() throws IOException;
+
+	/**
+	 * Returns the {@link OutputStream} that sends bytes to the opposite side. Calling this method twice returns the
+	 * same {@link OutputStream}.
+	 *
+	 * @return the {@link OutputStream}
+	 *
+	 * @throws IOException if the {@link OutputStream} cannot be provided
+	 */
+	public OutputStream getOutputStream() throws IOException;
+
+	/**
+	 * Returns a {@link WritableByteChannel} that writes to the same destination as {@link #getOutputStream()}. A
+	 * {@link Postman} writes the bytes of a {@link Parcel} to it. Before, it flushes any data it has written to the
+	 * {@link OutputStream}.
+	 *
+	 * @return the {@link WritableByteChannel}
+	 *
+	 * @throws IOException if the {@link WritableByteChannel} cannot be provided
+	 */
+	public WritableByteChannel getOutputChannel() throws IOException;
+
+	/**
+	 * Returns how many bytes should be buffered before they are sent.
+	 *
+	 * @return the send buffer size
+	 *
+	 * @throws IOException if the size cannot be determined
+	 */
+	public int getSendBufferSize() throws IOException;
+
+	/**
+	 * Returns how many bytes should be buffered while receiving.
+	 *
+	 * @return the receive buffer size
+	 *
+	 * @throws IOException if the size cannot be determined
+	 */
+	public int getReceiveBufferSize() throws IOException;
+
+	/**
+	 * Closes the output of this {@link Link}. The opposite side will read {@code EOF} after it has read all bytes
+	 * that were sent before. The input stays open.
+	 *
+	 * @throws IOException if the output cannot be closed
+	 */
+	public void shutdownOutput() throws IOException;
+
+	/**
+	 * Closes this {@link Link} in both directions.
+	 *
+	 * @throws IOException if this {@link Link} cannot be closed
+	 */
+	public void close() throws IOException;
+
+	/**
+	 * Returns weather this {@link Link} was closed with {@link #close()}.
+	 *
+	 * @return if this {@link Link} is closed
+	 */
+	public boolean isClosed();
+
+}
@@ -1,14 +1,24 @@
 package de.teiesti.postie;
 
+import de.teiesti.postie.links.ChannelLink;
+import de.teiesti.postie.postmen.ParallelPostman;
 import org.pmw.tinylog.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An {@link Office} accepts network connection on a given {@link ServerSocket} and spawns {@link Postman} to respond
@@ -18,12 +28,25 @@ import java.util.Set;
  * To setup an {@link Office} call {@link #spawn(Postman)} with a {@link Postman} that was configured with a {@link
  * Serializer} and all necessary {@link Recipient}s. If a {@link Socket} was bound it will be ignored. There is no
  * trouble if the {@link Postman} is running but the system may behaves strange if the {@link Postman}'s state is
- * changing. In addition, you must call {@link #bind(ServerSocket)} with a {@link ServerSocket}. To complete the
- * setup, call {@link #start()} which starts the required thread. If work is done call {@link #stop()}.
+ * changing. In addition, you must call {@link #bind(ServerSocket)} with a {@link ServerSocket} or
+ * {@link #bind(ServerSocketChannel)} with a {@link ServerSocketChannel}. To complete the setup, call {@link #start()}
+ * which starts the required thread. If work is done call {@link #stop()}.<br>
+ * <br>
+ * A long-running {@link Office} should reap idle connections (see {@link #reapIdle(long, TimeUnit)}). Otherwise a
+ * connection whose opposite side died without closing it keeps its {@link Postman} and its threads forever.<br>
+ * <br>
+ * An {@link Office} with thousands of connections should give the blueprint a
+ * {@link de.teiesti.postie.io.BufferPool} (see {@link Postman#use(de.teiesti.postie.io.BufferPool)}). The spawned
+ * {@link Postman}s share it and hold buffers only while they are reading or writing.<br>
+ * <br>
+ * An {@link Office} that spawns {@link ParallelPostman}s may deliver their letters with {@link Thread}s of its own
+ * (see {@link #deliver(int, int)}), which are shared fairly between the connections.
  */
 public class Office {
 
 	private ServerSocket serverSocket;
+	private ServerSocketChannel serverChannel;
+	private SocketProfile profile;
 
 	private Postman blueprint;
 	private Set<Postman> postmen = Collections.synchronizedSet(new HashSet<Postman>());
@@ -39,13 +62,29 @@ public class Office {
 		public void noticeStop(Postman from) {
 			postmen.remove(from);
 		}
+
+		@Override
+		public void noticeError(Throwable error, Postman from) {
+			/* nothing to do: a failed postman stops and is removed in noticeStop(...) */
+		}
 	};
 
+	private long idleTimeout = 0;	// in nanoseconds, 0 means disabled
+
+	private int deliveryThreads = 0;	// 0 means that the postmen deliver on their own
+	private int deliveryQueueDepth;
+	private FairExecutor delivery;
+
+	// how often stopping many postmen reports its progress, in nanoseconds
+	private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
 	private Thread acceptor;
+	private Thread reaper;
 
 	/**
 	 * Binds this {@link Office} to a given {@link ServerSocket}. A given {@link ServerSocket} will override a
-	 * previously given one because an {@link Office} can only use one {@link ServerSocket} at once.
+	 * previously given one or a previously given {@link ServerSocketChannel} because an {@link Office} can only use
+	 * one {@link ServerSocket} at once.
 	 *
 	 * @param serverSocket the {@link ServerSocket}
 	 *
@@ -58,6 +97,117 @@ public class Office {
 			throw new IllegalArgumentException("serverSocket == null");
 
         this.serverSocket = serverSocket;
+		this.serverChannel = null;
+
+		return this;
+	}
+
+	/**
+	 * Binds this {@link Office} to a given {@link ServerSocketChannel}. Any accepted {@link SocketChannel} is handed
+	 * over to the spawned {@link Postman} as a {@link ChannelLink}. This works with any kind of
+	 * {@link ServerSocketChannel}, e.g. with one that listens on a Unix domain socket (available since Java 16, see
+	 * {@link ChannelLink}). The {@link ServerSocketChannel} must be in blocking mode. A given
+	 * {@link ServerSocketChannel} will override a previously given one or a previously given {@link ServerSocket}.
+	 *
+	 * @param serverChannel the {@link ServerSocketChannel}
+	 *
+	 * @return this {@link Office}
+	 *
+	 * @throws IllegalArgumentException if {@code serverChannel} is {@code null} or not in blocking mode
+	 */
+	public final synchronized Office bind(ServerSocketChannel serverChannel) {
+		if (serverChannel == null)
+			throw new IllegalArgumentException("serverChannel == null");
+		if (!serverChannel.isBlocking())
+			throw new IllegalArgumentException("serverChannel is not in blocking mode");
+
+		this.serverChannel = serverChannel;
+		this.serverSocket = null;
+
+		return this;
+	}
+
+	/**
+	 * Configures the {@link SocketProfile} this {@link Office} applies to any connection it accepts, before the
+	 * connection is handed over to a spawned {@link Postman}. The receive buffer size is applied to the
+	 * {@link ServerSocket} (or {@link ServerSocketChannel}) when this {@link Office} starts. If the
+	 * {@link SocketProfile} cannot be applied to an accepted connection, the connection is closed.
+	 *
+	 * @param profile the {@link SocketProfile} or {@code null} to leave the connections as they are
+	 *
+	 * @return this {@link Office}
+	 *
+	 * @throws IllegalStateException if this {@link Office} is running
+	 */
+	public final synchronized Office tune(SocketProfile profile) {
+		if (isRunning())
+			throw new IllegalStateException("cannot tune because this is running");
+
+		this.profile = profile;
+
+		return this;
+	}
+
+	/**
+	 * Makes this {@link Office} abort any spawned {@link Postman} that has not received anything for the given
+	 * timeout (see {@link Postman#idleTime(TimeUnit)} and {@link Postman#abort()}). This closes connections whose
+	 * opposite side died or stays silent and frees their threads and memory. The connections are checked twice per
+	 * timeout, so a connection is reaped after at most one and a half times the timeout. The opposite sides should send
+	 * heartbeats (see {@link Postman#heartbeat(long, TimeUnit)}) clearly more often than the timeout if they want to
+	 * stay connected while they have nothing to send. A timeout of {@code 0} disables reaping, which is the default.
+	 *
+	 * @param timeout the idle timeout or {@code 0} to disable reaping
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return this {@link Office}
+	 *
+	 * @throws IllegalStateException if this {@link Office} is running
+	 * @throws IllegalArgumentException if {@code timeout} is negative or {@code unit} is {@code null}
+	 */
+	public final synchronized Office reapIdle(long timeout, TimeUnit unit) {
+		if (isRunning())
+			throw new IllegalStateException("cannot change the idle timeout because this is running");
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout < 0");
+		if (unit == null)
+			throw new IllegalArgumentException("unit == null");
+
+		this.idleTimeout = unit.toNanos(timeout);
+
+		return this;
+	}
+
+	/**
+	 * Makes this {@link Office} deliver the letters of all spawned {@link ParallelPostman}s with the given number of
+	 * {@link Thread}s, which this {@link Office} owns. Each connection gets a fair share: the {@link Thread}s take the
+	 * waiting jobs of the connections in turns, so one noisy client cannot monopolize them while others are waiting.
+	 * Each connection may have at most the given number of jobs waiting. If it has more, receiving from this
+	 * connection waits until the {@link Thread}s caught up, which slows the client down. This overrides the
+	 * {@link ExecutorService} of the blueprint (see {@link ParallelPostman#setExecutorService(ExecutorService)}). Any
+	 * other {@link Postman} delivers on its own.<br>
+	 * <br>
+	 * The {@link Thread}s are started with this {@link Office}. Once it stops, they end as soon as every connection
+	 * has ended and all of its letters were delivered. A number of {@code 0} {@link Thread}s makes the
+	 * {@link Postman}s deliver on their own, which is the default.
+	 *
+	 * @param threads the number of {@link Thread}s or {@code 0} to disable
+	 * @param queueDepth the maximal number of waiting jobs per connection
+	 *
+	 * @return this {@link Office}
+	 *
+	 * @throws IllegalStateException if this {@link Office} is running
+	 * @throws IllegalArgumentException if {@code threads} is negative or {@code queueDepth} is less than {@code 1}
+	 */
+	public final synchronized Office deliver(int threads, int queueDepth) {
+		if (isRunning())
+			throw new IllegalStateException("cannot change the delivery because this is running");
+		if (threads < 0)
+			throw new IllegalArgumentException("threads < 0");
+		if (queueDepth < 1)
+			throw new IllegalArgumentException("queueDepth < 1");
+
+		this.deliveryThreads = threads;
+		this.deliveryQueueDepth = queueDepth;
 
 		return this;
 	}
@@ -92,11 +242,13 @@ public class Office {
 
 	/**
 	 * Starts this {@code Office}. Before, you must configure a {@code Postman} to spawn and a {@link ServerSocket}
-	 * to listen on. Use {@link #spawn(Postman)} and {@link #bind(ServerSocket)} for that.
+	 * or {@link ServerSocketChannel} to listen on. Use {@link #spawn(Postman)} and {@link #bind(ServerSocket)} or
+	 * {@link #bind(ServerSocketChannel)} for that.
 	 *
 	 * @return this {@link Postman}
 	 *
-	 * @throws IllegalStateException if this {@link Office} is already running
+	 * @throws IllegalStateException if this {@link Office} is already running or if the {@link SocketProfile} (see
+	 * {@link #tune(SocketProfile)}) cannot be applied
 	 */
 	public final synchronized Office start() {
 		if (isRunning())
@@ -104,9 +256,26 @@ public class Office {
 
 		// TODO check configuration, how?
 
+		try {
+			if (profile != null && serverChannel != null)
+				profile.applyTo(serverChannel);
+			if (profile != null && serverSocket != null)
+				profile.applyTo(serverSocket);
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot start because the socket profile cannot be applied", e);
+		}
+
+		if (deliveryThreads > 0)
+			delivery = new FairExecutor(deliveryThreads, deliveryQueueDepth);
+
 		acceptor = new Acceptor();
 		acceptor.start();
 
+		if (idleTimeout > 0) {
+			reaper = new Reaper();
+			reaper.start();
+		}
+
 		return this;
 	}
 
@@ -120,9 +289,10 @@ public class Office {
     }
 
 	/**
-	 * Stops this {@link Office}. This method closes the {@link ServerSocket} and stops the {@link Thread} that accepts
-	 * connections and spawns {@link Postman}. If the given parameter is {@code true},
-	 * this {@link Office} stops any running {@link Postman} that was spawned by this {@link Office}.
+	 * Stops this {@link Office}. This method closes the {@link ServerSocket} (or {@link ServerSocketChannel}) and
+	 * stops the {@link Thread} that accepts connections and spawns {@link Postman}. If the given parameter is
+	 * {@code true}, this {@link Office} stops any running {@link Postman} that was spawned by this {@link Office}. The
+	 * {@link Postman}s are stopped all at once, like {@link #shutdown(long, TimeUnit)} does, but without a deadline.
 	 *
 	 * @param stopPostmen weather to stop spawned {@link Postman}
 	 *
@@ -134,28 +304,141 @@ public class Office {
 		if (!isRunning())
 			throw new IllegalStateException("cannot stop because this is not running");
 
+		stopAccepting();
+
+		if (stopPostmen)
+			stopPostmen(Long.MAX_VALUE);
+		stopDelivery();
+
+		return this;
+	}
+
+	/**
+	 * Shuts this {@link Office} down within the given time. This {@link Office} stops accepting connections first.
+	 * Afterwards it tells every spawned {@link Postman} to stop at once, so all of them send the letters in
+	 * their outboxes and close their connections concurrently. It waits until all {@link Postman}s have stopped or the
+	 * given time has elapsed. Any {@link Postman} that has not stopped by then is aborted (see
+	 * {@link Postman#abort()}): its connection is closed and unsent letters are lost. The progress is logged.
+	 *
+	 * @param timeout the maximal time the {@link Postman}s get to stop gracefully
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return this {@link Office}
+	 *
+	 * @throws IllegalStateException if this {@link Office} is not running
+	 * @throws IllegalArgumentException if {@code timeout} is negative or {@code unit} is {@code null}
+	 */
+	public final synchronized Office shutdown(long timeout, TimeUnit unit) {
+		if (!isRunning())
+			throw new IllegalStateException("cannot shut down because this is not running");
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout < 0");
+		if (unit == null)
+			throw new IllegalArgumentException("unit == null");
+
+		stopAccepting();
+		stopPostmen(unit.toNanos(timeout));
+		stopDelivery();
+
+		return this;
+	}
+
+	private void stopAccepting() {
 		try {
-            serverSocket.close();
-            acceptor.join();
-        } catch (IOException | InterruptedException e) {
-            Logger.error(e);
-            System.exit(1);
-        }
+            if (serverChannel != null)
+				serverChannel.close();
+			else
+				serverSocket.close();
+		} catch (IOException e) {
+			Logger.warn("cannot close the server socket: {0}", e);
+		}
 
-        acceptor = null;
+		if (reaper != null)
+			reaper.interrupt();
 
-        if (stopPostmen)
-			synchronized (postmen) {
-				for (Postman p : postmen) {
-					p.unregister(postmanHelper);
-					p.stop();
+		// the threads end in any case, so an interrupt must not keep us from waiting
+		boolean interrupted = false;
+		for (Thread t : new Thread[] { acceptor, reaper }) {
+			while (t != null && t.isAlive()) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
 				}
-				postmen.clear();
 			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
 
-        return this;
+        acceptor = null;
+		reaper = null;
     }
 
+	private void stopPostmen(long timeout) {
+		Postman[] current;
+		synchronized (postmen) {
+			current = postmen.toArray(new Postman[postmen.size()]);
+			postmen.clear();
+		}
+		if (current.length == 0)
+			return;
+
+		Logger.info("stopping {0} postmen", current.length);
+
+		// all postmen send their remaining letters at the same time
+		for (Postman p : current) {
+			p.unregister(postmanHelper);
+			p.requestStop();
+		}
+
+		long start = System.nanoTime();
+		long lastReport = start;
+		int stopped = 0;
+		List<Postman> stragglers = new ArrayList<>();
+		boolean interrupted = false;
+		for (Postman p : current) {
+			long elapsed = System.nanoTime() - start;
+			long remaining = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(timeout - elapsed, 0);
+			try {
+				// once interrupted, the remaining postmen are aborted
+				if (p.awaitStop(interrupted ? 0 : remaining, TimeUnit.NANOSECONDS))
+					stopped++;
+				else
+					stragglers.add(p);
+			} catch (InterruptedException e) {
+				interrupted = true;
+				stragglers.add(p);
+			}
+
+			if (System.nanoTime() - lastReport >= REPORT_INTERVAL) {
+				Logger.info("{0} of {1} postmen stopped", stopped, current.length);
+				lastReport = System.nanoTime();
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+
+		if (stragglers.isEmpty()) {
+			Logger.info("all {0} postmen stopped", current.length);
+			return;
+		}
+
+		Logger.info("aborting {0} postmen that did not stop in time", stragglers.size());
+		for (Postman p : stragglers) {
+			try {
+				p.abort();
+			} catch (IllegalStateException e) {
+				// the postman has stopped in the meantime
+			}
+		}
+	}
+
+	// the threads end as soon as the postmen that are still running have stopped
+	private void stopDelivery() {
+		if (delivery != null) {
+			delivery.shutdown();
+			delivery = null;
+		}
+	}
+
 	/**
 	 * Returns weather this {@link Office} is running.
 	 *
@@ -168,24 +451,128 @@ public class Office {
 	private class Acceptor extends Thread {
 	 	@Override
 		public void run() {
-			Socket socket;
-			Postman postman;
 			while (true) {
 				try {
-					socket = serverSocket.accept();
-					postman = blueprint.clone().bind(socket);
-					postmen.add(postman);
-                    postman.start();
-				} catch (IOException | CloneNotSupportedException e) {
-					if (e instanceof SocketException)
-                        break;
-
-                    Logger.error(e);
-					System.exit(1);
+					if (serverChannel != null) {
+						SocketChannel channel = serverChannel.accept();
+						if (tune(channel)) spawn(channel);
+					} else {
+						Socket socket = serverSocket.accept();
+						if (tune(socket)) spawn(socket);
+					}
+				} catch (SocketException | ClosedChannelException e) {
+					// closing the server socket or channel makes accept() fail
+					break;
+				} catch (IOException e) {
+					// e.g. too many open files: the connection is lost but the office keeps accepting
+					Logger.warn("cannot accept a connection: {0}", e);
+				} catch (CloneNotSupportedException | RuntimeException e) {
+					// e.g. the server channel is not bound: accepting again would fail the same way
+					Logger.error(e);
+					break;
 				}
 			}
 
 		}
+
+		// starts a postman for an accepted connection, which is closed if that fails
+		private void spawn(Closeable connection) throws CloneNotSupportedException {
+			Postman postman = null;
+			ExecutorService lane = null;
+			try {
+				postman = blueprint.clone();
+				if (connection instanceof SocketChannel)
+					postman.use(new ChannelLink((SocketChannel) connection));
+				else
+					postman.bind((Socket) connection);
+				if (delivery != null && postman instanceof ParallelPostman) {
+					lane = delivery.lane();
+					((ParallelPostman) postman).setExecutorService(lane);
+					// the postman reports its stop through the lane, so it is closed when the postman is done
+					postman.onStop(closing(lane));
+				}
+				postmen.add(postman);
+				postman.start();
+			} catch (RuntimeException e) {
+				// e.g. the profile of the blueprint cannot be applied: only this connection is lost
+				Logger.warn("closing an accepted connection because its postman cannot be started: {0}", e);
+				if (postman != null) postmen.remove(postman);
+				if (lane != null) lane.shutdown();
+				close(connection);
+			} catch (CloneNotSupportedException e) {
+				close(connection);
+				throw e;
+			}
+		}
+
+		private Runnable closing(final ExecutorService lane) {
+			return new Runnable() {
+				@Override
+				public void run() {
+					lane.shutdown();
+				}
+			};
+		}
+
+		private void close(Closeable connection) {
+			try {
+				if (connection != null) connection.close();
+			} catch (IOException e) {
+				Logger.warn("cannot close an accepted connection: {0}", e);
+			}
+		}
+
+		private boolean tune(SocketChannel channel) throws IOException {
+			try {
+				if (profile != null) profile.applyTo(channel);
+				return true;
+			} catch (IOException e) {
+				Logger.warn("closing an accepted connection because the socket profile cannot be applied: {0}", e);
+				channel.close();
+				return false;
+			}
+		}
+
+		private boolean tune(Socket socket) throws IOException {
+			try {
+				if (profile != null) profile.applyTo(socket);
+				return true;
+			} catch (IOException e) {
+				Logger.warn("closing an accepted connection because the socket profile cannot be applied: {0}", e);
+				socket.close();
+				return false;
+			}
+		}
+	}
+
+	private class Reaper extends Thread {
+		@Override
+		public void run() {
+			try {
+				while (!this.isInterrupted()) {
+					TimeUnit.NANOSECONDS.sleep(idleTimeout / 2);
+
+					// aborting a postman removes it from the set, so the set must not be locked meanwhile
+					Postman[] current;
+					synchronized (postmen) {
+						current = postmen.toArray(new Postman[postmen.size()]);
+					}
+
+					for (Postman p : current) {
+						if (p.idleTime(TimeUnit.NANOSECONDS) <= idleTimeout) continue;
+
+						Logger.info("reaping a connection that was idle for {0} ms", p.idleTime(TimeUnit.MILLISECONDS));
+						try {
+							p.abort();
+						} catch (IllegalStateException e) {
+							// the postman has stopped in the meantime
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// stop reaping
+			}
+		}
 	}
 
 }
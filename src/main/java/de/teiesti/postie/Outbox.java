@@ -0,0 +1,429 @@
+package de.teiesti.postie;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link Outbox} holds the items a {@link Postman} has to send in a number of lanes. Each lane is a FIFO queue. A
+ * lane with a higher number is more urgent. Items that are added with {@link #addFirst(Object)} are taken before any
+ * lane, e.g. acknowledgements or {@code Letter}s that are sent again after a reconnect.<br>
+ * <br>
+ * An {@link Outbox} services its lanes in one of two ways:
+ * <ul>
+ *     <li>strict: an item is taken from the most urgent lane that is not empty. A busy urgent lane starves the
+ *     others.</li>
+ *     <li>weighted: each lane has a weight. Out of a round of items, each lane that is not empty gets as many items as
+ *     its weight says, the most urgent lane first. No lane starves.</li>
+ * </ul>
+ * An item can be added with a key (see {@link #add(Object, int, Object)}). If an item with an equal key is still
+ * waiting, the new item replaces it at its position instead of being queued. Thus a slow connection sends only the
+ * latest item per key and the {@link Outbox} holds at most one item per key.<br>
+ * <br>
+ * All provided methods are thread-safe.
+ */
+final class Outbox {
+
+	private final Deque<Object> front = new ArrayDeque<>();
+	private final Deque<Object>[] lanes;
+
+	// null if the lanes are serviced strict
+	private final int[] weights;
+	private final int[] credits;
+
+	// the waiting items that were added with a key
+	private final Map<Object, Slot> keyed = new HashMap<>();
+
+	private int size = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * Creates a new {@link Outbox} with a single lane.
+	 */
+	public Outbox() {
+		this(1, null);
+	}
+
+	/**
+	 * Creates a new {@link Outbox} with the given number of lanes that are serviced strict.
+	 *
+	 * @param lanes the number of lanes
+	 *
+	 * @throws IllegalArgumentException if {@code lanes} is less than {@code 1}
+	 */
+	public Outbox(int lanes) {
+		this(lanes, null);
+	}
+
+	/**
+	 * Creates a new {@link Outbox} with a lane for each given weight. The lanes are serviced weighted.
+	 *
+	 * @param weights the weights, the least urgent lane first
+	 *
+	 * @throws IllegalArgumentException if {@code weights} is {@code null} or empty or if a weight is less than
+	 * {@code 1}
+	 */
+	public Outbox(int[] weights) {
+		this(checked(weights).length, weights);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Outbox(int lanes, int[] weights) {
+		if (lanes < 1)
+			throw new IllegalArgumentException("lanes < 1");
+
+		this.lanes = new Deque[lanes];
+		for (int i = 0; i < lanes; i++)
+			this.lanes[i] = new ArrayDeque<>();
+
+		this.weights = weights == null ? null : weights.clone();
+		this.credits = weights == null ? null : weights.clone();
+	}
+
+	private static int[] checked(int[] weights) {
+		if (weights == null || weights.length == 0)
+			throw new IllegalArgumentException("weights == null || weights.length == 0");
+		for (int weight : weights)
+			if (weight < 1)
+				throw new IllegalArgumentException("weight < 1");
+		return weights;
+	}
+
+	/**
+	 * Creates a new {@link Outbox} that is configured like this one and contains the same items.
+	 *
+	 * @return the copy
+	 */
+	public Outbox copy() {
+		Outbox result = new Outbox(lanes.length, weights);
+		result.transfer(this);
+		return result;
+	}
+
+	/**
+	 * Moves any item from this {@link Outbox} to the given one, which must not be in use yet. An item keeps its lane
+	 * unless the given {@link Outbox} has less lanes: then it is moved to the most urgent one.
+	 *
+	 * @param target the {@link Outbox} that takes the items
+	 */
+	public void moveTo(Outbox target) {
+		target.transfer(this);
+		clear();
+	}
+
+	private void transfer(Outbox source) {
+		source.lock.lock();
+		try {
+			front.addAll(source.front);
+			for (int i = 0; i < source.lanes.length; i++) {
+				Deque<Object> lane = lanes[Math.min(i, lanes.length - 1)];
+				for (Object item : source.lanes[i]) {
+					// a slot must not be shared, because taking it from one outbox would change the other one
+					if (item instanceof Slot) {
+						Slot slot = new Slot(((Slot) item).key, ((Slot) item).item);
+						keyed.put(slot.key, slot);
+						item = slot;
+					}
+					lane.addLast(item);
+				}
+			}
+			size += source.size;
+		} finally {
+			source.lock.unlock();
+		}
+	}
+
+	private void clear() {
+		lock.lock();
+		try {
+			front.clear();
+			for (Deque<Object> lane : lanes)
+				lane.clear();
+			keyed.clear();
+			size = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of lanes.
+	 *
+	 * @return the number of lanes
+	 */
+	public int lanes() {
+		return lanes.length;
+	}
+
+	/**
+	 * Adds an item to the least urgent lane.
+	 *
+	 * @param item the item
+	 */
+	public void add(Object item) {
+		add(item, 0);
+	}
+
+	/**
+	 * Adds an item to the given lane.
+	 *
+	 * @param item the item
+	 * @param lane the lane
+	 *
+	 * @throws IllegalArgumentException if there is no such lane
+	 */
+	public void add(Object item, int lane) {
+		add(item, lane, null);
+	}
+
+	/**
+	 * Adds an item with the given key to the given lane. If an item with an equal key is still waiting, the given item
+	 * replaces it and keeps its position, which may be in another lane.
+	 *
+	 * @param item the item
+	 * @param lane the lane
+	 * @param key the key or {@code null} if the item must not replace another one
+	 *
+	 * @return if the item replaced another one
+	 *
+	 * @throws IllegalArgumentException if there is no such lane
+	 */
+	public boolean add(Object item, int lane, Object key) {
+		if (lane < 0 || lane >= lanes.length)
+			throw new IllegalArgumentException("lane < 0 || lane >= " + lanes.length);
+
+		lock.lock();
+		try {
+			if (key != null) {
+				Slot slot = keyed.get(key);
+				if (slot != null) {
+					slot.item = item;
+					return true;
+				}
+
+				slot = new Slot(key, item);
+				keyed.put(key, slot);
+				item = slot;
+			}
+
+			lanes[lane].addLast(item);
+			size++;
+			notEmpty.signal();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds an item that is taken before any item of any lane.
+	 *
+	 * @param item the item
+	 */
+	public void addFirst(Object item) {
+		lock.lock();
+		try {
+			front.addFirst(item);
+			size++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the given items so that they are taken in the given order before any other item.
+	 *
+	 * @param items the items
+	 */
+	public void addAllFirst(Deque<Object> items) {
+		lock.lock();
+		try {
+			Iterator<Object> i = items.descendingIterator();
+			while (i.hasNext()) {
+				front.addFirst(i.next());
+				size++;
+			}
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes any occurrence of the given item, e.g. a marker that became stale.
+	 *
+	 * @param item the item
+	 */
+	public void removeAll(Object item) {
+		lock.lock();
+		try {
+			size -= removeAll(front, item);
+			for (Deque<Object> lane : lanes)
+				size -= removeAll(lane, item);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static int removeAll(Deque<Object> queue, Object item) {
+		int result = 0;
+		while (queue.remove(item))
+			result++;
+		return result;
+	}
+
+	/**
+	 * Returns weather this {@link Outbox} is empty.
+	 *
+	 * @return if this {@link Outbox} is empty
+	 */
+	public boolean isEmpty() {
+		lock.lock();
+		try {
+			return size == 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the next item. If this {@link Outbox} is empty, this method waits until an item was added.
+	 *
+	 * @return the next item
+	 *
+	 * @throws InterruptedException if the waiting {@link Thread} was interrupted
+	 */
+	public Object take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (size == 0)
+				notEmpty.await();
+			return next();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the next item. If this {@link Outbox} is empty, this method waits at most the given time until an item was
+	 * added.
+	 *
+	 * @param timeout the maximal time to wait
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return the next item or {@code null} if this {@link Outbox} is still empty
+	 *
+	 * @throws InterruptedException if the waiting {@link Thread} was interrupted
+	 */
+	public Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (size == 0) {
+				if (nanos <= 0)
+					return null;
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return next();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits at most the given time until this {@link Outbox} is not empty. Unlike {@link #poll(long, TimeUnit)}, this
+	 * method does not take any item.
+	 *
+	 * @param timeout the maximal time to wait
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return {@code true} if this {@link Outbox} is not empty
+	 *
+	 * @throws InterruptedException if the waiting {@link Thread} was interrupted
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (size == 0) {
+				if (nanos <= 0)
+					return false;
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the next item if there is one.
+	 *
+	 * @return the next item or {@code null} if this {@link Outbox} is empty
+	 */
+	public Object poll() {
+		lock.lock();
+		try {
+			return size == 0 ? null : next();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// requires the lock and at least one item
+	private Object next() {
+		size--;
+		Object result = front.isEmpty() ? nextOfLanes() : front.removeFirst();
+
+		if (result instanceof Slot) {
+			Slot slot = (Slot) result;
+			keyed.remove(slot.key);
+			result = slot.item;
+		}
+		return result;
+	}
+
+	private Object nextOfLanes() {
+		if (weights == null) {
+			for (int i = lanes.length - 1; i >= 0; i--)
+				if (!lanes[i].isEmpty())
+					return lanes[i].removeFirst();
+		} else {
+			// a new round starts if no lane with items has credits left
+			for (int round = 0; round < 2; round++) {
+				for (int i = lanes.length - 1; i >= 0; i--) {
+					if (credits[i] > 0 && !lanes[i].isEmpty()) {
+						credits[i]--;
+						return lanes[i].removeFirst();
+					}
+				}
+				System.arraycopy(weights, 0, credits, 0, weights.length);
+			}
+		}
+
+		throw new IllegalStateException("size does not match the lanes: " + Arrays.toString(lanes));
+	}
+
+	// holds the latest item for a key as long as it waits
+	private static class Slot {
+
+		private final Object key;
+		private Object item;
+
+		private Slot(Object key, Object item) {
+			this.key = key;
+			this.item = item;
+		}
+
+	}
+
+}
@@ -0,0 +1,120 @@
+package de.teiesti.postie;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link Parcel} is a region of a file that a {@link Postman} sends as raw bytes. To send a {@link Parcel}, pass it
+ * to {@link Postman#ship(Parcel)}. The bytes are streamed from the file to the connection with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}. So they do neither pass through
+ * the {@link Serializer} nor - if the operating system supports it - through the heap. The opposite side stores a
+ * received {@link Parcel} in a {@link Warehouse}.<br>
+ * <br>
+ * The file must not shrink before the {@link Parcel} was sent.
+ */
+public final class Parcel {
+
+	private final FileChannel channel;
+	private final long position;
+	private final long count;
+	private final boolean owned;
+
+	/**
+	 * Creates a new {@link Parcel} that contains the given region of the given {@link FileChannel}. The
+	 * {@link FileChannel} must be readable. It is not closed after the {@link Parcel} was sent.
+	 *
+	 * @param channel the {@link FileChannel} to read from
+	 * @param position the position of the first byte of the region
+	 * @param count the number of bytes of the region
+	 *
+	 * @throws IllegalArgumentException if {@code channel} is {@code null} or if {@code position} or {@code count} is
+	 * negative
+	 */
+	public Parcel(FileChannel channel, long position, long count) {
+		this(channel, position, count, false);
+	}
+
+	/**
+	 * Creates a new {@link Parcel} that contains the whole file at the given {@link Path}. The file is opened
+	 * immediately and closed after the {@link Parcel} was sent. The size of the {@link Parcel} is the size of the
+	 * file at the time this constructor is called.
+	 *
+	 * @param file the {@link Path} of the file
+	 *
+	 * @throws IOException if the file cannot be opened
+	 * @throws IllegalArgumentException if {@code file} is {@code null}
+	 */
+	public Parcel(Path file) throws IOException {
+		this(open(file), true);
+	}
+
+	private Parcel(FileChannel channel, boolean owned) throws IOException {
+		this(channel, 0, channel.size(), owned);
+	}
+
+	private Parcel(FileChannel channel, long position, long count, boolean owned) {
+		if (channel == null)
+			throw new IllegalArgumentException("channel == null");
+		if (position < 0)
+			throw new IllegalArgumentException("position < 0");
+		if (count < 0)
+			throw new IllegalArgumentException("count < 0");
+
+		this.channel = channel;
+		this.position = position;
+		this.count = count;
+		this.owned = owned;
+	}
+
+	private static FileChannel open(Path file) throws IOException {
+		if (file == null)
+			throw new IllegalArgumentException("file == null");
+
+		return FileChannel.open(file, StandardOpenOption.READ);
+	}
+
+	/**
+	 * Returns the number of bytes of this {@link Parcel}.
+	 *
+	 * @return the size of this {@link Parcel}
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * Writes the bytes of this {@link Parcel} to the given {@link WritableByteChannel}. If this
+	 * {@link Parcel} has opened its file, the file is closed afterwards.
+	 *
+	 * @param target the {@link WritableByteChannel} to write to
+	 *
+	 * @throws IOException if there is a problem with the file or the target
+	 */
+	void transferTo(WritableByteChannel target) throws IOException {
+		try {
+			long transferred = 0;
+			while (transferred < count) {
+				long n = channel.transferTo(position + transferred, count - transferred, target);
+				if (n == 0 && position + transferred >= channel.size())
+					throw new IOException("file shrank before the parcel was sent");
+				transferred += n;
+			}
+		} finally {
+			if (owned) channel.close();
+		}
+	}
+
+	/**
+	 * Releases this {@link Parcel} without writing its bytes anywhere. If this {@link Parcel} has opened its file,
+	 * the file is closed.
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	void discard() throws IOException {
+		if (owned) channel.close();
+	}
+
+}
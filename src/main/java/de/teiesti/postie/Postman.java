@@ -1,49 +1,182 @@
 package de.teiesti.postie;
 
+import de.teiesti.postie.io.BufferPool;
+import de.teiesti.postie.io.FrameReader;
+import de.teiesti.postie.io.FrameWriter;
+import de.teiesti.postie.links.ChannelLink;
+import de.teiesti.postie.links.LoopbackLink;
+import de.teiesti.postie.links.SocketLink;
 import org.pmw.tinylog.Logger;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@link Postman} delivers {@link Letter}s through a given {@link Socket}. A {@link Letter} can be any class that is
  * serializable by a {@link Serializer}. To send a message, pass it to {@link #send(Object)}. To receive messages
  * register a {@link Recipient} with {@link #register(Recipient)}<br>
  * <br>
- * To setup a {@link Postman} you must bind a {@link Socket} with {@link #bind(Socket)}. Beyond, you must register a
+ * Beside {@link Letter}s, a {@link Postman} can send the content of files as {@link Parcel}s with
+ * {@link #ship(Parcel)}. A {@link Parcel} bypasses the {@link Serializer} and is stored by the opposite side in the
+ * {@link Warehouse} that was given to {@link #store(Warehouse)}.<br>
+ * <br>
+ * To setup a {@link Postman} you must bind a {@link Socket} with {@link #bind(Socket)} or - to use another transport
+ * - give it a {@link Link} with {@link #use(Link)}. Beyond, you must register a
  * {@link Serializer} with {@link #use(Serializer)}. Afterwards you can start the {@link Postman} with
  * {@link #start()}. This will start two threads to handle the incoming and outgoing letters. You can stop a
  * {@link Postman} with {@link #stop()}.<br>
  * <br>
+ * If the connection fails, e.g. because the opposite side vanished or sent something that cannot be decoded, the
+ * {@link Postman} closes it, reports the error to its {@link Recipient}s (see
+ * {@link Recipient#noticeError(Throwable, Postman)}) and stops. Other {@link Postman}s are not affected. A client
+ * {@link Postman} can reconnect on its own instead (see {@link #reconnect(Connector, long, long, TimeUnit)}).<br>
+ * <br>
  * All provided methods are thread-safe.
  *
  * @param <Letter> type of the letters
  */
 public abstract class Postman<Letter> implements Cloneable {
 
-	private Socket socket;
+	private Link link;
+	private SocketProfile profile;
 	private Serializer<Letter> serializer;
-	protected Set<Recipient<Letter>> recipients = new CopyOnWriteArraySet<>();
+	private Charset charset = StandardCharsets.UTF_8;
+	private BufferPool pool;	// null means that this postman owns its buffers
+	protected Set<Recipient<Letter>> recipients = new RecipientRegistry<>();
+
+	// assigns the keys letters are routed by, null if every letter goes to every recipient
+	private Classifier<? super Letter, ?> router;
+	// the recipients that were registered without a key and get every letter
+	private Set<Recipient<Letter>> everyone = new RecipientRegistry<>();
+	// by key: the recipients that were registered with this key and everyone, modified under its own lock
+	private ConcurrentMap<Object, Set<Recipient<Letter>>> routes = new ConcurrentHashMap<>();
+	// by recipient: the keys it was registered with, guarded by the lock of routes
+	private Map<Recipient<Letter>, Set<Object>> keys = new HashMap<>();
+
+	private Warehouse warehouse;
+
+	// contains letters and parcels
+	private Outbox outbox = new Outbox();
+	// assigns the keys of letters that replace waiting letters with the same key, null if nothing is replaced
+	private Classifier<? super Letter, ?> conflater;
+
+	private Connector connector;
+	private long initialDelay;	// in nanoseconds
+	private long maxDelay;	// in nanoseconds
+
+	// letters that were sent through the current connection but not acknowledged yet, the oldest first
+	private BlockingDeque<Object> unacknowledged = new LinkedBlockingDeque<>();
+	// the number of letters the opposite side has acknowledged on the current connection
+	private long acknowledged;
+
+	private int window = 0;	// 0 means that send(...) never waits
+	// the number of letters that were sent but not acknowledged, guarded by flow
+	private long inFlight = 0;
+	private Object flow = new Object();
+	// set while send(...) has to wait for acknowledgements if the window is full
+	private volatile boolean admitting = false;
 
-	private BlockingQueue<Letter> outbox = new LinkedBlockingDeque<>();
+	// set if the opposite side asked for acknowledgements on the current connection
+	private volatile boolean acknowledging;
+	// the number of letters that were delivered on the current connection
+	private AtomicLong delivered = new AtomicLong();
+	private AtomicBoolean acknowledgementPending = new AtomicBoolean();
 
+	private ExecutorService decoder;
+	private boolean observeDecodeOrder = true;
+
+	private long heartbeat = 0;	// in nanoseconds, 0 means disabled
+	private long coalescing = COALESCING;	// in nanoseconds, 0 means disabled
+
+	// System.nanoTime() when the last frame was received
+	private volatile long lastReceived;
+	// set if the link was closed on purpose, so that failing to read or write is no error
+	private volatile boolean aborted = false;
+	// the error that made this postman close the link, reported by the receiver
+	private volatile Throwable failure;
+	private Object failing = new Object();
+	// set if this postman was told to stop, so that it does not reconnect
+	private volatile boolean stopping = false;
+	// run once this postman has stopped for good, e.g. by an office that gave it something for the connection
+	private volatile Runnable onStop;
+
+	private Thread supervisor;
 	private Thread sender;
 	private Thread receiver;
 
+	/**
+	 * The number of raw {@link Letter}s that may be decoded in parallel before the {@link Thread} that receives the
+	 * {@link Letter}s waits for the delivery to catch up.
+	 */
+	private static final int DECODE_WINDOW = 1024;
+
+	/**
+	 * The default of the maximal time in nanoseconds a written {@link Letter} may wait for more {@link Letter}s to be
+	 * flushed together (see {@link #coalesce(long, TimeUnit)}).
+	 */
+	private static final long COALESCING = TimeUnit.MICROSECONDS.toNanos(200);
+
+	/**
+	 * The character that introduces a control frame. A control frame is a raw {@link Letter} that is not passed to
+	 * the {@link Serializer} but interpreted by the {@link Postman} itself. The second character of a control frame
+	 * determines its kind.
+	 */
+	private static final char CONTROL = '\u0000';
+
+	/**
+	 * The kind of a control frame that announces a {@link Parcel}. The size of the {@link Parcel} follows as decimal
+	 * number. The bytes of the {@link Parcel} follow directly behind the separator.
+	 */
+	private static final char PARCEL = 'P';
+
+	/**
+	 * The kind of a control frame that tells the opposite side that this {@link Postman} is alive although it has
+	 * nothing to send. It has no content.
+	 */
+	private static final char HEARTBEAT = 'H';
+
+	/**
+	 * The kind of a control frame that asks the opposite side to acknowledge any {@link Letter} it delivers on this
+	 * connection. It has no content.
+	 */
+	private static final char REQUEST = 'R';
+
+	/**
+	 * The kind of a control frame that acknowledges delivered {@link Letter}s. The number of {@link Letter}s that were
+	 * delivered on this connection follows as decimal number.
+	 */
+	private static final char ACKNOWLEDGEMENT = 'A';
+
+	// tells the sender to stop: interrupting it would close an interruptible channel (see ChannelLink)
+	private static final Object STOP = new Object();
+	// tells the sender to acknowledge the delivered letters
+	private static final Object ACKNOWLEDGE = new Object();
+
 	/**
 	 * Clones this {@link Postman}. Cloning a {@link Postman} works as follows:
 	 * <ul>
-	 *     <li>The {@link Socket} this {@link Postman} was bound to can not be reused, because it is not
+	 *     <li>The {@link Socket} or {@link Link} this {@link Postman} was bound to can not be reused, because it is not
 	 *     thread-safe, or copied, because it does not provide the necessary information. Therefore it is set to
 	 *     {@code null}.</li>
 	 *     <li>The {@link Serializer} can be reused because it is thread-safe and does not save any state. So the
 	 *     reference is copied.</li>
+	 *     <li>The {@link ExecutorService} that was given to {@link #decodeWith(ExecutorService, boolean)} and the
+	 *     {@link Warehouse} that was given to {@link #store(Warehouse)} are shared between the original and the
+	 *     clone. So the references are copied, too. The same applies to the {@link Connector} that was given to
+	 *     {@link #reconnect(Connector, long, long, TimeUnit)} and the {@link Classifier} that was given to
+	 *     {@link #conflate(Classifier)} or {@link #route(Classifier)}.</li>
 	 *     <li>The registered {@link Recipient}s should not be shared across different {@link Postman} automatically.
-	 *     Therefore their {@link Set} is copied but the {@link Recipient}s stay the same.
+	 *     Therefore their {@link Set} and their keys are copied but the {@link Recipient}s stay the same.
 	 *     <li>Because a {@link Socket} is missing, no {@link Thread} can be started.</li>
 	 * </ul>
 	 * Summary: To obtain a running {@link Postman} from a clone, you must at least - depending on the original -
@@ -53,16 +186,35 @@ public abstract class Postman<Letter> implements Cloneable {
 	 */
 	@Override
 	public Postman clone() throws CloneNotSupportedException {
-		Postman result = (Postman) super.clone();
+		@SuppressWarnings("unchecked")
+		Postman<Letter> result = (Postman<Letter>) super.clone();
 
 		// fields that won't be copied and must be initialized for new
-		socket = null;
-		sender = null;
-		receiver = null;
+		result.link = null;
+		result.supervisor = null;
+		result.sender = null;
+		result.receiver = null;
+		result.onStop = null;
 
 		// fields that will be copied in deep
-		recipients = new CopyOnWriteArraySet<>(recipients);
-		outbox = new LinkedBlockingDeque<>(outbox);
+		synchronized (routes) {
+			result.recipients = new RecipientRegistry<>(recipients);
+			result.everyone = new RecipientRegistry<>(everyone);
+			result.routes = new ConcurrentHashMap<>();
+			for (Map.Entry<Object, Set<Recipient<Letter>>> route : routes.entrySet())
+				result.routes.put(route.getKey(), new RecipientRegistry<>(route.getValue()));
+			result.keys = new HashMap<>();
+			for (Map.Entry<Recipient<Letter>, Set<Object>> k : keys.entrySet())
+				result.keys.put(k.getKey(), new HashSet<>(k.getValue()));
+		}
+		result.failing = new Object();
+		result.outbox = outbox.copy();
+		result.unacknowledged = new LinkedBlockingDeque<>(unacknowledged);
+		result.delivered = new AtomicLong();
+		result.acknowledgementPending = new AtomicBoolean();
+		result.flow = new Object();
+		result.inFlight = 0;
+		result.admitting = false;
 
 		// don't wonder: the reference to serializer was copied during super.clone()
 
@@ -89,7 +241,56 @@ public abstract class Postman<Letter> implements Cloneable {
 			throw new IllegalArgumentException("socket == null");
 		// TODO check more about the socket state here
 
-		this.socket = socket;
+		this.link = new SocketLink(socket);
+
+		return this;
+	}
+
+	/**
+	 * Configures the {@link SocketProfile} this {@link Postman} applies to the {@link Socket} it was bound to. The
+	 * {@link SocketProfile} is applied when this {@link Postman} starts, so it does not matter if this method is
+	 * called before or after {@link #bind(Socket)}. It is also applied to the {@link java.nio.channels.SocketChannel}
+	 * of a {@link ChannelLink}; any other {@link Link} is left as it is. It is not possible to change the
+	 * {@link SocketProfile} as long as this {@link Postman} is running. In this case this method throws a
+	 * {@link IllegalStateException}.
+	 *
+	 * @param profile the {@link SocketProfile} or {@code null} to leave the {@link Socket} as it is
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 */
+	public synchronized final Postman tune(SocketProfile profile) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot tune because this postman is running");
+
+		this.profile = profile;
+
+		return this;
+	}
+
+	/**
+	 * Makes this {@link Postman} send and receive through the given {@link Link}. This is an alternative to
+	 * {@link #bind(Socket)} for transports that are not a {@link Socket}, e.g. a
+	 * {@link de.teiesti.postie.links.MappedLink} between two processes on the same host or a {@link LoopbackLink}
+	 * between two {@link Postman}s in the same JVM. A given {@link Link} will override a previously given one or a
+	 * previously bound {@link Socket}. It is not possible to change the {@link Link} as long as this {@link Postman}
+	 * is running. In this case this method throws a {@link IllegalStateException}.
+	 *
+	 * @param link the {@link Link} this {@link Postman} should use
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code link} is {@code null}
+	 */
+	public synchronized final Postman use(Link link) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot use a link because this postman is running");
+		if (link == null)
+			throw new IllegalArgumentException("link == null");
+
+		this.link = link;
 
 		return this;
 	}
@@ -119,303 +320,1463 @@ public abstract class Postman<Letter> implements Cloneable {
 	}
 
 	/**
-	 * Starts this {@link Postman}. This will start two {@link Thread}s: one that delivers the incoming {@link
-	 * Letter}s to any registered {@link Recipient} and one that sends the outgoing messages through the {@link Socket}.
-	 * If this {@link Postman} cannot start for some reason, this method throws an {@link IllegalStateException}.
+	 * Makes this {@link Postman} use the given {@link Charset} to transfer the characters of encoded {@link Letter}s. A
+	 * given {@link Charset} will override a previously given one. Both sides of a connection must use the same
+	 * {@link Charset}. The default is UTF-8, which does not depend on the platform and takes the fastest path: ASCII
+	 * characters, e.g. most of a JSON string, are copied without a {@link java.nio.charset.CharsetEncoder} or
+	 * {@link java.nio.charset.CharsetDecoder} (see {@link FrameWriter} and {@link FrameReader}). It is not possible to
+	 * change the {@link Charset} as long as this {@link Postman} is running. In this case this method throws a
+	 * {@link IllegalStateException}.
+	 *
+	 * @param charset the {@link Charset} this {@link Postman} should use
 	 *
 	 * @return this {@link Postman}
 	 *
-	 * @throws IllegalArgumentException if this {@link Postman} cannot start because it is already running,
-	 * not bound to a {@link Socket} or bound to {@link Socket} was was already closed or does not use a {@link
-	 * Serializer}
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code charset} is {@code null}
 	 */
-	public synchronized final Postman start() {
-		if (isRunning())
-			throw new IllegalStateException("cannot start because this postman is already running");
-		if (socket == null)
-			throw new IllegalStateException("cannot start because this postman not bound to a socket");
-		if (socket.isClosed())
-			throw new IllegalStateException("cannot start because bound socket is already closed");
-		if (serializer == null)
-			throw new IllegalArgumentException("cannot start because no serializer was configured (used)");
-
-		sender = new Sender();
-		receiver = new Receiver();
+	public synchronized final Postman use(Charset charset) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot use a charset because this postman is running");
+		if (charset == null)
+			throw new IllegalArgumentException("charset == null");
 
-		sender.start();
-		receiver.start();
+		this.charset = charset;
 
 		return this;
 	}
 
 	/**
-	 * Registers a {@link Recipient}. Any {@link Letter} that was received from the {@link Socket} by this
-	 * {@link Postman} will be delivered to any registered {@link Recipient} using {@link #deliver(Object)}.
+	 * Makes this {@link Postman} borrow its send and receive buffers from the given {@link BufferPool} instead of
+	 * allocating its own ones sized to the buffers of the {@link Link}. A given {@link BufferPool} will override a
+	 * previously given one. A buffer is borrowed only while this {@link Postman} is actually writing or reading
+	 * letters: an idle connection holds no buffer at all. Because a clone shares the {@link BufferPool} of its
+	 * original, a {@link BufferPool} given to the blueprint of an {@link Office} is shared by all {@link Postman}s the
+	 * {@link Office} spawns. It is not possible to change the {@link BufferPool} as long as this {@link Postman} is
+	 * running. In this case this method throws a {@link IllegalStateException}.
 	 *
-	 * @param recipient the {@link Recipient} to register
+	 * @param pool the {@link BufferPool} this {@link Postman} should borrow from
 	 *
 	 * @return this {@link Postman}
 	 *
-	 * @throws IllegalArgumentException if {@code recipient} is {@code null}
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code pool} is {@code null}
 	 */
-	public final Postman register(Recipient<Letter> recipient) {
-		if (recipient == null)
-			throw new IllegalArgumentException("recipient == null");
+	public synchronized final Postman use(BufferPool pool) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot use a buffer pool because this postman is running");
+		if (pool == null)
+			throw new IllegalArgumentException("pool == null");
 
-		recipients.add(recipient);
+		this.pool = pool;
 
 		return this;
 	}
 
 	/**
-	 * Unregisters the given {@link Recipient}. After calling this method, the given {@link Recipient} will not
-	 * receive any letter from this {@link Postman} anymore. If the given {@link Recipient} was not registered,
-	 * this method does nothing.
+	 * Makes this {@link Postman} decode the received {@link Letter}s with the given {@link ExecutorService}. By
+	 * default, a {@link Postman} decodes any {@link Letter} within the {@link Thread} that receives them. This
+	 * limits the decoding to one core per connection. If an {@link ExecutorService} is given, the receiving
+	 * {@link Thread} does only split the incoming characters into raw {@link Letter}s (see
+	 * {@link Serializer#readNext(Reader)}) and submits them to the {@link ExecutorService} for decoding. An additional
+	 * {@link Thread} picks the decoded {@link Letter}s and passes them to {@link #deliver(Object)}. If
+	 * {@code observeLetterOrder} is {@code true}, the {@link Letter}s are delivered in the order they have been
+	 * received. Otherwise they are delivered in the order their decoding has completed. In any case,
+	 * {@link #deliver(Object)} is never called by two {@link Thread}s at once.<br>
+	 * <br>
+	 * The given {@link ExecutorService} is not shut down by this {@link Postman}. It is not possible to change the
+	 * {@link ExecutorService} as long as this {@link Postman} is running. In this case this method throws a
+	 * {@link IllegalStateException}.
 	 *
-	 * @param recipient the {@link Recipient} to unregister
+	 * @param decoder the {@link ExecutorService} that decodes the received {@link Letter}s
+	 * @param observeLetterOrder weather the decoded {@link Letter}s should be delivered in the order they have been
+	 *                           received
 	 *
 	 * @return this {@link Postman}
 	 *
-	 * @throws IllegalArgumentException if {@code recipient} is {@code null}
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code decoder} is {@code null}
 	 */
-	public final Postman unregister(Recipient recipient) {
-		if (recipient == null)
-			throw new IllegalArgumentException("recipient == null");
+	public synchronized final Postman decodeWith(ExecutorService decoder, boolean observeLetterOrder) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot use a decoder because this postman is running");
+		if (decoder == null)
+			throw new IllegalArgumentException("decoder == null");
 
-		recipients.remove(recipient);
+		this.decoder = decoder;
+		this.observeDecodeOrder = observeLetterOrder;
 
 		return this;
 	}
 
 	/**
-	 * Sends a {@link Letter} through the {@link Socket} that was bind to this {@link Postman}. In detail,
-	 * this method stores the given {@link Letter} for sending and returns. Therefore the {@link Letter} should
-	 * not be modified after it was passed to this method. If this {@link Postman} is running,
-	 * an other {@link Thread} will pick the {@link Letter} at some time in the future. It will serialize the letter
-	 * with the {@link Serializer} that was given to this {@link Postman} during setup. Afterwards the {@link Thread}
-	 * sends the serialized {@link Letter} through the {@link Socket} this {@link Postman} was bind to. If this
-	 * {@link Postman} is not running, it will store the {@link Letter} until it was started with {@link #start()}. A
-	 * {@link Postman} sends {@link Letter}s in the order they where passed to this method.
+	 * Makes this {@link Postman} send a heartbeat if it has not sent anything for the given interval. A heartbeat is a
+	 * tiny control frame that is not delivered to any {@link Recipient}. It only shows the opposite side that this
+	 * {@link Postman} is still alive (see {@link #idleTime(TimeUnit)}), e.g. to keep an {@link Office} from reaping the
+	 * connection (see {@link Office#reapIdle(long, TimeUnit)}). The interval should therefore be clearly shorter than
+	 * the idle timeout of the opposite side. A {@link Postman} that is busy does not send heartbeats at all. An
+	 * interval of {@code 0} disables heartbeats, which is the default. A {@link Link} that carries letters (see
+	 * {@link LoopbackLink#carriesLetters()}) never transports heartbeats. It is not possible to change the interval as
+	 * long as this {@link Postman} is running. In this case this method throws a {@link IllegalStateException}.
 	 *
-	 * @param letter the {@link Letter} to send
+	 * @param interval the interval or {@code 0} to disable heartbeats
+	 * @param unit the {@link TimeUnit} of {@code interval}
 	 *
 	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code interval} is negative or {@code unit} is {@code null}
 	 */
-	public final Postman send(Letter letter) {
-		if (letter == null)
-			throw new IllegalArgumentException("letter == null");
+	public synchronized final Postman heartbeat(long interval, TimeUnit unit) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot change the heartbeat because this postman is running");
+		if (interval < 0)
+			throw new IllegalArgumentException("interval < 0");
+		if (unit == null)
+			throw new IllegalArgumentException("unit == null");
 
-		try {
-			outbox.put(letter);
-		} catch(InterruptedException e) {
-			Logger.error(e);
-			System.exit(1);
-		}
+		this.heartbeat = unit.toNanos(interval);
 
 		return this;
 	}
 
 	/**
-	 * This method should delivers the given {@link Letter} to any {@link Recipient} that was registered with
-	 * {@link #register(Recipient)}. This method is called from the {@link Thread} that receives {@link Letter}s from
-	 * the {@link Socket}. Therefore this method should not block for long.
+	 * Makes this {@link Postman} coalesce the flushes of {@link Letter}s that are sent in short intervals. A
+	 * {@link Postman} that is idle flushes a {@link Letter} as soon as it was written. If {@link Letter}s were sent in
+	 * intervals shorter than the given maximal delay recently, this {@link Postman} waits a moment for the next
+	 * {@link Letter} before it flushes, so that many {@link Letter}s share a single system call. It stops waiting if
+	 * this does not pay off, e.g. if the opposite side answers each {@link Letter} before it sends the next one. A
+	 * written {@link Letter} does never wait for a flush longer than the given maximal delay. The default is 200
+	 * microseconds, a maximal delay of {@code 0} makes this {@link Postman} flush whenever there is nothing left to
+	 * send. It is not possible to change the maximal delay as long as this {@link Postman} is running. In this case
+	 * this method throws a {@link IllegalStateException}.
 	 *
-	 * @param letter the {@link Letter} to deliver
+	 * @param maxDelay the maximal delay or {@code 0} to disable coalescing
+	 * @param unit the {@link TimeUnit} of {@code maxDelay}
 	 *
 	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code maxDelay} is negative or {@code unit} is {@code null}
 	 */
-	protected abstract Postman deliver(Letter letter);
+	public synchronized final Postman coalesce(long maxDelay, TimeUnit unit) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot change coalescing because this postman is running");
+		if (maxDelay < 0)
+			throw new IllegalArgumentException("maxDelay < 0");
+		if (unit == null)
+			throw new IllegalArgumentException("unit == null");
+
+		this.coalescing = unit.toNanos(maxDelay);
+
+		return this;
+	}
 
 	/**
-	 * This method should report to any {@link Recipient} that a connection was established and the {@link Postman}
-	 * starts delivering {@link Letter}s now. In order to do so, it should call {@link Recipient#noticeStart(Postman)}
-	 * for any registered recipient with this {@link Postman} as argument. This method is called from the
-	 * {@link Thread} that receives {@link Letter}s. The {@link Postman} will not deliver a {@link Letter} to any
-	 * {@link Recipient} before this method returns. To give the {@link Recipient}s the possibility to perform a final
-	 * setup, this method should not complete before any {@link Recipient#noticeStart(Postman)} has also completed.
+	 * Makes this {@link Postman} store received {@link Parcel}s in the given {@link Warehouse}. A given
+	 * {@link Warehouse} will override a previously given one. If no {@link Warehouse} was given, received
+	 * {@link Parcel}s are discarded. It is not possible to change the {@link Warehouse} as long as this
+	 * {@link Postman} is running. In this case this method throws a {@link IllegalStateException}.
+	 *
+	 * @param warehouse the {@link Warehouse} to store the received {@link Parcel}s in
 	 *
 	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code warehouse} is {@code null}
 	 */
-	protected abstract Postman reportStart();
+	public synchronized final Postman store(Warehouse warehouse) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot use a warehouse because this postman is running");
+		if (warehouse == null)
+			throw new IllegalArgumentException("warehouse == null");
+
+		this.warehouse = warehouse;
+
+		return this;
+	}
 
 	/**
-	 * This method should report to any {@link Recipient} that the last {@link Letter} was delivered and the connection
-	 * will close. In order to do that, it should call {@link Recipient#noticeStop} for any registered recipient with
-	 * this {@link Postman} as argument. This method is called from the {@link Thread} that receives {@link Letter}s
-	 * from the {@link Socket} once the last {@link Letter} was received and delivered to the {@link Recipient}s. If the
-	 * opposite site closes the connection normally, this method is called before the sending {@link Thread} is stopped.
-	 * Therefore, this method should not return before any {@link Recipient#noticeStop(Postman)} was completed to give
-	 * these actions the possibility to send a {@link Letter}. If the connection was terminated or if we close the
-	 * connection ({@link #stop} was called), the sender was closed before this method is called.
+	 * Divides the outbox of this {@link Postman} into the given number of lanes, one for each priority (see
+	 * {@link #send(Object, int)}). The sending {@link Thread} always picks the next {@link Letter} from the most urgent
+	 * lane that is not empty. Thus an urgent {@link Letter}, e.g. a cancellation, does not wait behind thousands of
+	 * bulk {@link Letter}s, but bulk {@link Letter}s may wait forever if urgent {@link Letter}s never stop. Use
+	 * {@link #prioritize(int[])} to prevent that. By default, there is a single lane. {@link Parcel}s always use the
+	 * least urgent lane.<br>
+	 * <br>
+	 * {@link Letter}s that already wait in the outbox keep their lane if it still exists or move to the most urgent
+	 * one. It is not possible to change the lanes as long as this {@link Postman} is running. In this case this method
+	 * throws a {@link IllegalStateException}.
+	 *
+	 * @param lanes the number of lanes
 	 *
 	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code lanes} is less than {@code 1}
 	 */
-	protected abstract Postman reportStop();
+	public synchronized final Postman prioritize(int lanes) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot change the lanes because this postman is running");
+
+		Outbox next = new Outbox(lanes);
+		outbox.moveTo(next);
+		outbox = next;
+
+		return this;
+	}
 
 	/**
-	 * Stops this {@link Postman}. If this {@link Postman} is not running yet, this method throws a
-	 * {@link IllegalStateException}. Stopping a {@link Postman} stops the two threads that send and receive
-	 * {@link Letter}s and closes the {@link Socket} this {@link Postman} was bind to. Therefore this {@link Postman}
-	 * must bind to a new {@link Socket} before it can be started with {@link #start()}. Any message that was stored
-	 * for sending with {@link #send(Object)} will be sent before this {@link Postman} is closed.<br>
+	 * Divides the outbox of this {@link Postman} into weighted lanes, one for each priority (see
+	 * {@link #send(Object, int)}). Unlike {@link #prioritize(int)}, no lane starves: within a round, the sending
+	 * {@link Thread} picks as many {@link Letter}s from each lane that is not empty as the weight of the lane says,
+	 * the most urgent lane first. With the weights {@code {1, 8}}, for example, urgent {@link Letter}s get eight of
+	 * nine slots while there are bulk {@link Letter}s, too. {@link Parcel}s always use the least urgent lane.<br>
 	 * <br>
-	 * The exactly closing procedure works as follows:
-	 * <ol>
-	 *     <li>Send any message that was given to {@link #send(Object)}.</li>
-	 *     <li>Shutdown the {@link Socket} output. That will send an {@code EOF}. Sending {@code EOF} is the
-	 *     indication for the opposite side to stop sending.</li>
-	 *     <li>Stop the sender thread.</li>
-	 *     <li>Wait until the opposite side sends {@code EOF}.</li>
-	 *     <li>Close the {@link Socket}.</li>
-	 *     <li>Stop the receiving thread.</li>
-	 * </ol>
+	 * {@link Letter}s that already wait in the outbox keep their lane if it still exists or move to the most urgent
+	 * one. It is not possible to change the lanes as long as this {@link Postman} is running. In this case this method
+	 * throws a {@link IllegalStateException}.
+	 *
+	 * @param weights the weights of the lanes, the least urgent first
 	 *
 	 * @return this {@link Postman}
 	 *
-	 * @throws IllegalStateException if this {@link Postman} is not running
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code weights} is {@code null} or empty or if a weight is less than
+	 * {@code 1}
 	 */
-	public synchronized final Postman stop() {
-		if (!isRunning())
-			throw new IllegalStateException("cannot stop because this postman is not running");
-
-		sender.interrupt();
-		try {
-			sender.join();
-			receiver.join();
-		} catch (InterruptedException e) {
-			Logger.error(e);
-			System.exit(1);
-		}
+	public synchronized final Postman prioritize(int[] weights) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot change the lanes because this postman is running");
 
-		sender = null;
-		receiver = null;
+		Outbox next = new Outbox(weights);
+		outbox.moveTo(next);
+		outbox = next;
 
 		return this;
 	}
 
 	/**
-	 * Returns weather this {@link Postman} is running.
+	 * Makes the outbox of this {@link Postman} conflate {@link Letter}s: if a {@link Letter} is sent while another one
+	 * with an equal key is still waiting in the outbox, the new {@link Letter} replaces the waiting one at its
+	 * position. The keys are assigned by the given {@link Classifier}. A {@link Letter} with the key {@code null} is
+	 * never replaced and never replaces another one. This suits feeds where only the latest value per key matters: a
+	 * slow opposite side gets the current values instead of an ever-growing backlog of stale ones, and the outbox holds
+	 * at most one {@link Letter} per key. A {@link Letter} that was already taken for sending is never replaced.<br>
+	 * <br>
+	 * It is not possible to change the {@link Classifier} as long as this {@link Postman} is running. In this case
+	 * this method throws a {@link IllegalStateException}.
 	 *
-	 * @return if this {@link Postman} is running.
+	 * @param classifier the {@link Classifier} that assigns the keys or {@code null} to queue any {@link Letter}
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
 	 */
-	public final boolean isRunning() {
-		return receiver != null && receiver.isAlive();
-	}
-
-	private class Sender extends Thread {
+	public synchronized final Postman conflate(Classifier<? super Letter, ?> classifier) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot change the classifier because this postman is running");
 
-		@Override
-		public void run() {
-			// open output writer
-			BufferedWriter out = openOutput();
+		this.conflater = classifier;
 
-			// send letters
-			Letter letter;
-			try {
-				while (!this.isInterrupted()) {
-					letter = outbox.take();
-					serializer.encodeNext(out, letter);
-					if (outbox.isEmpty()) out.flush();
-				}
-			} catch (InterruptedException e) {
-				// reset interrupt status
-				this.interrupt();
-			} catch (IOException e) {
-				Logger.error(e);
-				System.exit(1);
-			}
+		return this;
+	}
 
-			// clean up
-			try {
-				while (!outbox.isEmpty()) {
-					letter = outbox.poll();
-					serializer.encodeNext(out, letter);
-				}
-				out.flush();
-			} catch (IOException e) {
-				Logger.error(e);
-				System.exit(1);
-			}
+	/**
+	 * Makes this {@link Postman} route received {@link Letter}s by the keys the given {@link Classifier} assigns. A
+	 * {@link Letter} is delivered to those {@link Recipient}s that were registered with its key (see
+	 * {@link #register(Recipient, Object)}) and to those that were registered without any key. Any other
+	 * {@link Recipient} is not bothered with it. A {@link Letter} with the key {@code null} goes to the
+	 * {@link Recipient}s without a key only. The {@link Recipient}s are looked up in an index, so delivering a
+	 * {@link Letter} costs as much as there are matching {@link Recipient}s, not as much as there are registered ones.
+	 * To route by the subtype of the {@link Letter}s, use a {@link Classifier} that returns the {@link Class} of a
+	 * {@link Letter} and register the {@link Recipient}s with the {@link Class}es they are interested in.<br>
+	 * <br>
+	 * It is not possible to change the {@link Classifier} as long as this {@link Postman} is running. In this case
+	 * this method throws a {@link IllegalStateException}.
+	 *
+	 * @param router the {@link Classifier} that assigns the keys or {@code null} to deliver every {@link Letter} to
+	 * every {@link Recipient}
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 */
+	public synchronized final Postman route(Classifier<? super Letter, ?> router) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot change the router because this postman is running");
 
-			// close the postman output
-			try {
-				socket.shutdownOutput();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		}
+		this.router = router;
 
-		private BufferedWriter openOutput() {
-			BufferedWriter result = null;
+		return this;
+	}
 
-			try {
-				int outBuffer = socket.getSendBufferSize();
-				OutputStream outStream = socket.getOutputStream();
-				result =  new BufferedWriter(new OutputStreamWriter(outStream), outBuffer);
-			} catch (IOException e) {
-				Logger.error(e);
-				System.exit(1);
-			}
+	/**
+	 * Makes this {@link Postman} wait for the opposite side to acknowledge the {@link Letter}s it delivered. This
+	 * {@link Postman} asks the opposite side to acknowledge any {@link Letter} once it was passed to
+	 * {@link #deliver(Object)}. The acknowledgements are cumulative: the n-th {@link Letter} on a connection has the
+	 * sequence number n and an acknowledgement carries the sequence number of the last delivered {@link Letter}. A
+	 * {@link Letter} is acknowledged after {@link #deliver(Object)} has returned. A
+	 * {@link de.teiesti.postie.postmen.SequentialPostman} returns once every {@link Recipient} has accepted the
+	 * {@link Letter}. A {@link de.teiesti.postie.postmen.ParallelPostman} or a
+	 * {@link de.teiesti.postie.postmen.RingPostman} returns once it has handed the {@link Letter} to its
+	 * {@link Thread}s, whether it observes the letter order or not. For these, an acknowledgement only means that the
+	 * {@link Letter} was received and handed off, not that the {@link Recipient}s have processed it.<br>
+	 * <br>
+	 * At most {@code window} {@link Letter}s may be sent but not acknowledged at once. If the window is full,
+	 * {@link #send(Object)} waits until the opposite side acknowledges a {@link Letter}. Thus a fast producer is
+	 * throttled by the progress of the {@link Recipient}s on the opposite side instead of the buffers of the operating
+	 * system. {@link #send(Object)} does not wait if this {@link Postman} is not running. A {@link Link} that carries
+	 * letters (see {@link LoopbackLink#carriesLetters()}) does not transport acknowledgements: a {@link Letter} counts
+	 * as acknowledged once it was passed to the {@link Link} which has a limited capacity anyway. {@link Letter}s that
+	 * were not acknowledged when a connection was closed are sent again first when this {@link Postman} starts
+	 * again.<br>
+	 * <br>
+	 * A window of {@code 0} disables the acknowledgements, which is the default, unless this {@link Postman}
+	 * reconnects on its own (see {@link #reconnect(Connector, long, long, TimeUnit)}). It is not possible to change
+	 * the window as long as this {@link Postman} is running. In this case this method throws a
+	 * {@link IllegalStateException}.
+	 *
+	 * @param window the maximal number of {@link Letter}s that are not acknowledged or {@code 0} to disable the window
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code window} is negative
+	 */
+	public synchronized final Postman acknowledge(int window) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot change the window because this postman is running");
+		if (window < 0)
+			throw new IllegalArgumentException("window < 0");
 
-			return result;
-		}
+		this.window = window;
 
+		return this;
 	}
 
-	private class Receiver extends Thread {
+	/**
+	 * Makes this {@link Postman} establish its connections on its own with the given {@link Connector} and reconnect
+	 * whenever a connection is lost, until it is stopped with {@link #stop()} or {@link #abort()}. A given
+	 * {@link Connector} overrides a previously bound {@link Socket} or given {@link Link}. This is meant for clients:
+	 * an {@link Office} cannot reach a {@link Postman} it accepted once the connection is lost.<br>
+	 * <br>
+	 * If a connection cannot be established or was lost, this {@link Postman} waits before it tries again. The delay
+	 * starts at {@code initialDelay} and doubles with each failed attempt up to {@code maxDelay}. Each delay is
+	 * shortened by a random amount of up to one half, so that many clients of a restarted server do not reconnect
+	 * all at once. A successful connection resets the delay.<br>
+	 * <br>
+	 * The outbox is kept across connections: {@link Letter}s that are sent while there is no connection are sent as
+	 * soon as the next one was established. In addition, this {@link Postman} asks the opposite side to acknowledge
+	 * any {@link Letter} it delivers. {@link Letter}s that were sent through a lost connection but not acknowledged are
+	 * sent again through the next one before any other {@link Letter}. A {@link Letter} is therefore delivered at least
+	 * once, but may be delivered twice if a connection was lost before its acknowledgement arrived. {@link Parcel}s are
+	 * not sent again. The {@link Recipient}s are notified about the start and the stop of each connection.<br>
+	 * <br>
+	 * It is not possible to change the {@link Connector} as long as this {@link Postman} is running. In this case
+	 * this method throws a {@link IllegalStateException}.
+	 *
+	 * @param connector the {@link Connector} that establishes the connections
+	 * @param initialDelay the delay before the first attempt to reconnect
+	 * @param maxDelay the maximal delay between two attempts
+	 * @param unit the {@link TimeUnit} of {@code initialDelay} and {@code maxDelay}
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is running
+	 * @throws IllegalArgumentException if {@code connector} or {@code unit} is {@code null}, {@code initialDelay} is
+	 * less than {@code 1} or {@code maxDelay} is less than {@code initialDelay}
+	 */
+	public synchronized final Postman reconnect(Connector connector, long initialDelay, long maxDelay, TimeUnit unit) {
+		if (this.isRunning())
+			throw new IllegalStateException("cannot use a connector because this postman is running");
+		if (connector == null)
+			throw new IllegalArgumentException("connector == null");
+		if (unit == null)
+			throw new IllegalArgumentException("unit == null");
+		if (initialDelay < 1)
+			throw new IllegalArgumentException("initialDelay < 1");
+		if (maxDelay < initialDelay)
+			throw new IllegalArgumentException("maxDelay < initialDelay");
+
+		this.connector = connector;
+		this.link = null;
+		this.initialDelay = unit.toNanos(initialDelay);
+		this.maxDelay = unit.toNanos(maxDelay);
+
+		return this;
+	}
+
+	/**
+	 * Starts this {@link Postman}. This will start two {@link Thread}s: one that delivers the incoming {@link
+	 * Letter}s to any registered {@link Recipient} and one that sends the outgoing messages through the {@link Socket}.
+	 * If this {@link Postman} cannot start for some reason, this method throws an {@link IllegalStateException}.<br>
+	 * <br>
+	 * If this {@link Postman} reconnects on its own (see {@link #reconnect(Connector, long, long, TimeUnit)}), this
+	 * method does not wait for a connection. A third {@link Thread} establishes the connections and starts the other
+	 * two for each of them.
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalArgumentException if this {@link Postman} cannot start because it is already running,
+	 * not bound to a {@link Socket} or bound to {@link Socket} was was already closed or does not use a {@link
+	 * Serializer} although its {@link Link} does not carry letters (see {@link LoopbackLink#carriesLetters()})
+	 * @throws IllegalStateException if the {@link SocketProfile} (see {@link #tune(SocketProfile)}) cannot be applied
+	 */
+	public synchronized final Postman start() {
+		if (isRunning())
+			throw new IllegalStateException("cannot start because this postman is already running");
+
+		stopping = false;
+		if (connector != null) {
+			if (serializer == null)
+				throw new IllegalArgumentException("cannot start because no serializer was configured (used)");
+
+			admitting = true;
+			supervisor = new Supervisor();
+			supervisor.start();
+
+			return this;
+		}
+
+		if (link == null)
+			throw new IllegalStateException("cannot start because this postman not bound to a socket or link");
+		if (link.isClosed())
+			throw new IllegalStateException("cannot start because bound socket or link is already closed");
+		if (serializer == null && carrier() == null)
+			throw new IllegalArgumentException("cannot start because no serializer was configured (used)");
+
+		try {
+			applyProfile(link);
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot start because the socket profile cannot be applied", e);
+		}
+
+		admitting = true;
+		open();
+
+		return this;
+	}
+
+	private void applyProfile(Link link) throws IOException {
+		if (profile != null && link instanceof SocketLink)
+			profile.applyTo(((SocketLink) link).getSocket());
+		if (profile != null && link instanceof ChannelLink)
+			profile.applyTo(((ChannelLink) link).getChannel());
+	}
+
+	/**
+	 * Starts the sending and the receiving {@link Thread} for the current {@link Link}. {@link Letter}s that were sent
+	 * through a previous connection but not acknowledged are sent again before any other {@link Letter}.
+	 */
+	private void open() {
+		// a previous sender may have been told to stop twice or to acknowledge letters of a lost connection
+		outbox.removeAll(STOP);
+		outbox.removeAll(ACKNOWLEDGE);
+
+		outbox.addAllFirst(unacknowledged);
+		unacknowledged.clear();
+
+		aborted = false;
+		failure = null;
+		lastReceived = System.nanoTime();
+		acknowledged = 0;
+		acknowledging = false;
+		delivered.set(0);
+		acknowledgementPending.set(false);
+
+		sender = new Sender();
+		receiver = new Receiver();
+
+		sender.start();
+		receiver.start();
+	}
+
+	/**
+	 * Registers a {@link Recipient}. Any {@link Letter} that was received from the {@link Socket} by this
+	 * {@link Postman} will be delivered to any registered {@link Recipient} using {@link #deliver(Object)}.
+	 *
+	 * @param recipient the {@link Recipient} to register
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalArgumentException if {@code recipient} is {@code null}
+	 */
+	public final Postman register(Recipient<Letter> recipient) {
+		if (recipient == null)
+			throw new IllegalArgumentException("recipient == null");
+
+		synchronized (routes) {
+			recipients.add(recipient);
+			everyone.add(recipient);
+			for (Set<Recipient<Letter>> route : routes.values())
+				route.add(recipient);
+		}
+		recipientsChanged();
+
+		return this;
+	}
+
+	/**
+	 * Registers a {@link Recipient} for the {@link Letter}s with the given key. If this {@link Postman} routes the
+	 * {@link Letter}s (see {@link #route(Classifier)}), the {@link Recipient} gets only those {@link Letter}s the
+	 * {@link Classifier} assigns the given key. Otherwise it gets every {@link Letter}. A {@link Recipient} may be
+	 * registered with several keys. It is reported the start, the stop and any error of a connection like any other
+	 * {@link Recipient}.
+	 *
+	 * @param recipient the {@link Recipient} to register
+	 * @param key the key of the {@link Letter}s the {@link Recipient} is interested in
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalArgumentException if {@code recipient} or {@code key} is {@code null}
+	 */
+	public final Postman register(Recipient<Letter> recipient, Object key) {
+		if (recipient == null)
+			throw new IllegalArgumentException("recipient == null");
+		if (key == null)
+			throw new IllegalArgumentException("key == null");
+
+		synchronized (routes) {
+			recipients.add(recipient);
+			Set<Recipient<Letter>> route = routes.get(key);
+			if (route == null) {
+				route = new RecipientRegistry<>(everyone);
+				routes.put(key, route);
+			}
+			route.add(recipient);
+
+			Set<Object> k = keys.get(recipient);
+			if (k == null) {
+				k = new HashSet<>();
+				keys.put(recipient, k);
+			}
+			k.add(key);
+		}
+		recipientsChanged();
+
+		return this;
+	}
+
+	/**
+	 * Unregisters the given {@link Recipient}. After calling this method, the given {@link Recipient} will not
+	 * receive any letter from this {@link Postman} anymore. If the given {@link Recipient} was not registered,
+	 * this method does nothing.
+	 *
+	 * @param recipient the {@link Recipient} to unregister
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalArgumentException if {@code recipient} is {@code null}
+	 */
+	public final Postman unregister(Recipient recipient) {
+		if (recipient == null)
+			throw new IllegalArgumentException("recipient == null");
+
+		synchronized (routes) {
+			recipients.remove(recipient);
+			// only a recipient that gets every letter is part of every route
+			if (everyone.remove(recipient))
+				for (Set<Recipient<Letter>> route : routes.values())
+					route.remove(recipient);
+
+			Set<Object> k = keys.remove(recipient);
+			if (k != null) {
+				for (Object key : k) {
+					Set<Recipient<Letter>> route = routes.get(key);
+					route.remove(recipient);
+					// a key nobody was registered with is routed to everyone anyway, which every route contains
+					if (route.size() == everyone.size()) routes.remove(key);
+				}
+			}
+		}
+		recipientsChanged();
+
+		return this;
+	}
+
+	/**
+	 * Returns the {@link Recipient}s the given {@link Letter} should be delivered to (see {@link #route(Classifier)}).
+	 * Without a router, these are all registered {@link Recipient}s. The result is a view that must not be modified.
+	 * Looking it up does not create any object.
+	 *
+	 * @param letter the {@link Letter} to deliver
+	 *
+	 * @return the {@link Recipient}s of the {@link Letter}
+	 */
+	protected final Set<Recipient<Letter>> recipientsOf(Letter letter) {
+		if (router == null)
+			return recipients;
+		if (routes.isEmpty())
+			return everyone;
+
+		Object key = router.classify(letter);
+		Set<Recipient<Letter>> result = key == null ? null : routes.get(key);
+		return result == null ? everyone : result;
+	}
+
+	/**
+	 * This method is called after a {@link Recipient} was registered or unregistered. It does nothing by default. A
+	 * subclass that keeps state per {@link Recipient}, e.g. a {@link Thread}, may override it to follow the change.
+	 * This method is called from the {@link Thread} that registered or unregistered the {@link Recipient}, which may be
+	 * any {@link Thread}.
+	 */
+	protected void recipientsChanged() {
+		/* nothing to do */
+	}
+
+	/**
+	 * Sends a {@link Letter} through the {@link Socket} that was bind to this {@link Postman}. In detail,
+	 * this method stores the given {@link Letter} for sending and returns. Therefore the {@link Letter} should
+	 * not be modified after it was passed to this method. If this {@link Postman} is running,
+	 * an other {@link Thread} will pick the {@link Letter} at some time in the future. It will serialize the letter
+	 * with the {@link Serializer} that was given to this {@link Postman} during setup. Afterwards the {@link Thread}
+	 * sends the serialized {@link Letter} through the {@link Socket} this {@link Postman} was bind to. If this
+	 * {@link Postman} is not running, it will store the {@link Letter} until it was started with {@link #start()}. A
+	 * {@link Postman} sends {@link Letter}s in the order they where passed to this method. This method sends the
+	 * {@link Letter} with the priority {@code 0}, which is the least urgent one (see {@link #send(Object, int)}).<br>
+	 * <br>
+	 * If this {@link Postman} is running and its window of {@link Letter}s that were not acknowledged is full (see
+	 * {@link #acknowledge(int)}), this method waits until the opposite side acknowledges a {@link Letter} or this
+	 * {@link Postman} stops. If the waiting {@link Thread} is interrupted, the {@link Letter} is stored anyway and
+	 * the interrupt status is kept.
+	 *
+	 * @param letter the {@link Letter} to send
+	 *
+	 * @return this {@link Postman}
+	 */
+	public final Postman send(Letter letter) {
+		return send(letter, 0);
+	}
+
+	/**
+	 * Sends a {@link Letter} with the given priority. This works like {@link #send(Object)}, but the {@link Letter} is
+	 * put into the lane of the outbox that belongs to the given priority (see {@link #prioritize(int)}). A
+	 * {@link Letter} with a higher priority may overtake {@link Letter}s with a lower priority that are still waiting
+	 * in the outbox. {@link Letter}s with the same priority are sent in the order they where passed to this method.
+	 * If the outbox conflates {@link Letter}s (see {@link #conflate(Classifier)}), a {@link Letter} that replaces a
+	 * waiting one takes its place and priority.
+	 *
+	 * @param letter the {@link Letter} to send
+	 * @param priority the priority from {@code 0} (least urgent) to the number of lanes minus one (most urgent)
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalArgumentException if {@code letter} is {@code null} or if there is no lane for {@code priority}
+	 */
+	public final Postman send(Letter letter, int priority) {
+		if (letter == null)
+			throw new IllegalArgumentException("letter == null");
+		if (priority < 0 || priority >= outbox.lanes())
+			throw new IllegalArgumentException("priority < 0 || priority >= " + outbox.lanes());
+
+		Object key = conflater == null ? null : conflater.classify(letter);
+
+		if (window > 0)
+			admit();
+		// a replaced letter will never be sent, so it gives its room in the window back
+		if (outbox.add(letter, priority, key))
+			release(1);
+
+		return this;
+	}
+
+	/**
+	 * Sends a {@link Parcel} through the {@link Socket} that was bind to this {@link Postman}. Like
+	 * {@link #send(Object)}, this method stores the given {@link Parcel} for sending and returns. {@link Letter}s and
+	 * {@link Parcel}s are sent in the order they where passed to this method or {@link #send(Object)}. The bytes of the
+	 * {@link Parcel} are transferred from the file to the {@link Socket} without passing the {@link Serializer}. If the
+	 * {@link Socket} has a {@link java.nio.channels.SocketChannel}, the operating system may transfer the bytes without
+	 * copying them into the heap at all (see {@link Link#getOutputChannel()}). The opposite side passes a received
+	 * {@link Parcel} to its {@link Warehouse} (see {@link #store(Warehouse)}).
+	 *
+	 * @param parcel the {@link Parcel} to send
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalArgumentException if {@code parcel} is {@code null}
+	 */
+	public final Postman ship(Parcel parcel) {
+		if (parcel == null)
+			throw new IllegalArgumentException("parcel == null");
+
+		outbox.add(parcel);
+
+		return this;
+	}
+
+	/**
+	 * This method should delivers the given {@link Letter} to any {@link Recipient} that was registered with
+	 * {@link #register(Recipient)} and to those that were registered with its key (see {@link #recipientsOf(Object)}).
+	 * This method is called from the {@link Thread} that receives {@link Letter}s from
+	 * the {@link Socket} or - if the {@link Letter}s are decoded in parallel (see
+	 * {@link #decodeWith(ExecutorService, boolean)}) - from the {@link Thread} that collects the decoded
+	 * {@link Letter}s. It is never called by two {@link Thread}s at once. Anyway, this method should not block for
+	 * long.
+	 *
+	 * @param letter the {@link Letter} to deliver
+	 *
+	 * @return this {@link Postman}
+	 */
+	protected abstract Postman deliver(Letter letter);
+
+	/**
+	 * This method should report to any {@link Recipient} that a connection was established and the {@link Postman}
+	 * starts delivering {@link Letter}s now. In order to do so, it should call {@link Recipient#noticeStart(Postman)}
+	 * for any registered recipient with this {@link Postman} as argument. This method is called from the
+	 * {@link Thread} that receives {@link Letter}s. The {@link Postman} will not deliver a {@link Letter} to any
+	 * {@link Recipient} before this method returns. To give the {@link Recipient}s the possibility to perform a final
+	 * setup, this method should not complete before any {@link Recipient#noticeStart(Postman)} has also completed.
+	 *
+	 * @return this {@link Postman}
+	 */
+	protected abstract Postman reportStart();
+
+	/**
+	 * This method should report to any {@link Recipient} that the last {@link Letter} was delivered and the connection
+	 * will close. In order to do that, it should call {@link Recipient#noticeStop} for any registered recipient with
+	 * this {@link Postman} as argument. This method is called from the {@link Thread} that receives {@link Letter}s
+	 * from the {@link Socket} once the last {@link Letter} was received and delivered to the {@link Recipient}s. If the
+	 * opposite site closes the connection normally, this method is called before the sending {@link Thread} is stopped.
+	 * Therefore, this method should not return before any {@link Recipient#noticeStop(Postman)} was completed to give
+	 * these actions the possibility to send a {@link Letter}. If the connection was terminated or if we close the
+	 * connection ({@link #stop} was called), the sender was closed before this method is called.
+	 *
+	 * @return this {@link Postman}
+	 */
+	protected abstract Postman reportStop();
+
+	/**
+	 * This method should report to any {@link Recipient} that the connection failed because of the given error. In
+	 * order to do that, it should call {@link Recipient#noticeError(Throwable, Postman)} for any registered recipient
+	 * with the error and this {@link Postman} as arguments. This method is called from the {@link Thread} that
+	 * receives {@link Letter}s, after any {@link Letter} that was received before the error was delivered and directly
+	 * before {@link #reportStop()}. At this time, the connection is already closed.
+	 *
+	 * @param error the error that made the connection fail
+	 *
+	 * @return this {@link Postman}
+	 */
+	protected abstract Postman reportError(Throwable error);
+
+	/**
+	 * Stops this {@link Postman}. If this {@link Postman} is not running yet, this method throws a
+	 * {@link IllegalStateException}. Stopping a {@link Postman} stops the two threads that send and receive
+	 * {@link Letter}s and closes the {@link Socket} this {@link Postman} was bind to. Therefore this {@link Postman}
+	 * must bind to a new {@link Socket} before it can be started with {@link #start()}. Any message that was stored
+	 * for sending with {@link #send(Object)} will be sent before this {@link Postman} is closed.<br>
+	 * <br>
+	 * The exactly closing procedure works as follows:
+	 * <ol>
+	 *     <li>Send any message that was given to {@link #send(Object)}.</li>
+	 *     <li>Shutdown the {@link Socket} output. That will send an {@code EOF}. Sending {@code EOF} is the
+	 *     indication for the opposite side to stop sending.</li>
+	 *     <li>Stop the sender thread.</li>
+	 *     <li>Wait until the opposite side sends {@code EOF}.</li>
+	 *     <li>Close the {@link Socket}.</li>
+	 *     <li>Stop the receiving thread.</li>
+	 * </ol>
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is not running
+	 */
+	public synchronized final Postman stop() {
+		if (!isRunning())
+			throw new IllegalStateException("cannot stop because this postman is not running");
+
+		requestStop();
+		try {
+			join();
+		} catch (InterruptedException e) {
+			// the threads keep stopping, but the caller does not want to wait any longer
+			Thread.currentThread().interrupt();
+			return this;
+		}
+
+		return this;
+	}
+
+	private void join() throws InterruptedException {
+		if (supervisor != null) {
+			supervisor.join();
+		} else {
+			sender.join();
+			receiver.join();
+		}
+
+		supervisor = null;
+		sender = null;
+		receiver = null;
+	}
+
+	/**
+	 * Tells this {@link Postman} to stop like {@link #stop()} does but does not wait until it has stopped. The
+	 * {@link Letter}s that were sent before are still sent. Use {@link #awaitStop(long, TimeUnit)} to wait. This
+	 * allows an {@link Office} to stop many {@link Postman}s at once.
+	 */
+	final synchronized void requestStop() {
+		if (!isRunning())
+			return;
+
+		// a supervisor checks this before it starts a new connection
+		synchronized (failing) {
+			stopping = true;
+			outbox.add(STOP);
+		}
+		if (supervisor != null)
+			supervisor.interrupt();
+	}
+
+	/**
+	 * Waits at most the given time until this {@link Postman} has stopped, e.g. after {@link #requestStop()}.
+	 *
+	 * @param timeout the maximal time to wait
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return if this {@link Postman} has stopped
+	 *
+	 * @throws InterruptedException if the waiting {@link Thread} was interrupted
+	 */
+	final boolean awaitStop(long timeout, TimeUnit unit) throws InterruptedException {
+		Thread last;
+		synchronized (this) {
+			last = supervisor != null ? supervisor : receiver;
+		}
+
+		// the receiver waits for the sender before it ends, the supervisor waits for the receiver
+		if (last != null)
+			unit.timedJoin(last, timeout);
+		return last == null || !last.isAlive();
+	}
+
+	/**
+	 * Stops this {@link Postman} at once. Unlike {@link #stop()}, this method does not wait for the opposite side but
+	 * closes the {@link Link} immediately. {@link Letter}s that have not been sent yet are lost and the opposite side
+	 * reads {@code EOF} or fails with an error. Any registered {@link Recipient} is told that this {@link Postman}
+	 * stopped. Use this method to get rid of a connection whose opposite side is dead or does not respond.
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalStateException if this {@link Postman} is not running
+	 */
+	public synchronized final Postman abort() {
+		if (!isRunning())
+			throw new IllegalStateException("cannot abort because this postman is not running");
+
+		Link link;
+		synchronized (failing) {
+			stopping = true;
+			aborted = true;
+			link = this.link;
+		}
+		try {
+			// a supervisor may not have established a connection yet
+			if (link != null) link.close();
+		} catch (IOException e) {
+			Logger.warn("cannot close the link while aborting: {0}", e);
+		}
+
+		outbox.add(STOP);
+		if (supervisor != null)
+			supervisor.interrupt();
+		try {
+			join();
+		} catch (InterruptedException e) {
+			// the threads keep stopping, but the caller does not want to wait any longer
+			Thread.currentThread().interrupt();
+			return this;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Returns how long this {@link Postman} has not received anything, neither a {@link Letter} nor a {@link Parcel}
+	 * nor a heartbeat (see {@link #heartbeat(long, TimeUnit)}). If nothing was received since this {@link Postman}
+	 * was started, this method returns the time since the start.
+	 *
+	 * @param unit the {@link TimeUnit} of the result
+	 *
+	 * @return the time since something was received
+	 */
+	public final long idleTime(TimeUnit unit) {
+		return unit.convert(System.nanoTime() - lastReceived, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns weather this {@link Postman} is running.
+	 *
+	 * @return if this {@link Postman} is running.
+	 */
+	public final boolean isRunning() {
+		if (supervisor != null)
+			return supervisor.isAlive();
+		return receiver != null && receiver.isAlive();
+	}
+
+	/**
+	 * Tears down the connection of this {@link Postman} because of the given error. The error is reported to the
+	 * {@link Recipient}s by the receiving {@link Thread} before it reports the stop. An error that follows from a
+	 * closed {@link Link} is ignored if this {@link Postman} was aborted or has already failed.<br>
+	 * <br>
+	 * A {@link Recipient} that throws while the receiving {@link Thread} delivers to it fails the connection this way.
+	 * A subclass that calls its {@link Recipient}s from other {@link Thread}s must call this method if one of them
+	 * throws, so that the error is reported like any other.
+	 *
+	 * @param error the error
+	 */
+	protected final void fail(Throwable error) {
+		synchronized (failing) {
+			if (aborted) return;
+			aborted = true;
+			failure = error;
+		}
+
+		Logger.warn("closing a connection because of an error: {0}", error);
+		try {
+			link.close();
+		} catch (IOException e) {
+			Logger.warn("cannot close the link of a failed connection: {0}", e);
+		}
+	}
+
+	/**
+	 * Returns the {@link Link} this {@link Postman} uses if it carries letters instead of bytes.
+	 *
+	 * @return the {@link LoopbackLink} or {@code null} if the {@link Link} carries bytes
+	 */
+	private LoopbackLink carrier() {
+		if (link instanceof LoopbackLink && ((LoopbackLink) link).carriesLetters())
+			return (LoopbackLink) link;
+		return null;
+	}
+
+	/**
+	 * Waits until the window has room for another {@link Letter} and takes it.
+	 */
+	private void admit() {
+		synchronized (flow) {
+			try {
+				while (admitting && inFlight >= window)
+					flow.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			inFlight++;
+		}
+	}
+
+	/**
+	 * Gives the room of acknowledged {@link Letter}s back to the window.
+	 *
+	 * @param count the number of acknowledged {@link Letter}s
+	 */
+	private void release(long count) {
+		if (window == 0 || count == 0)
+			return;
+
+		synchronized (flow) {
+			inFlight = Math.max(inFlight - count, 0);
+			flow.notifyAll();
+		}
+	}
+
+	/**
+	 * Wakes any {@link Thread} that waits in {@link #send(Object)}, because this {@link Postman} has stopped.
+	 */
+	private void closeWindow() {
+		synchronized (flow) {
+			admitting = false;
+			flow.notifyAll();
+		}
+	}
+
+	/**
+	 * Sets an action that is run once this {@link Postman} has stopped for good. Unlike
+	 * {@link Recipient#noticeStop(Postman)}, the action runs after the stop and any error were reported to every
+	 * {@link Recipient}, so nothing is delivered anymore. This allows an {@link Office} to take back what it gave a
+	 * spawned {@link Postman} for delivering. The action is not copied by {@link #clone()}.
+	 *
+	 * @param action the action or {@code null} to run nothing
+	 */
+	final void onStop(Runnable action) {
+		this.onStop = action;
+	}
+
+	/**
+	 * Wakes any {@link Thread} that waits in {@link #send(Object)} and runs the action that was given to
+	 * {@link #onStop(Runnable)}, because this {@link Postman} has stopped for good.
+	 */
+	private void stopped() {
+		closeWindow();
+
+		Runnable action = onStop;
+		if (action != null) action.run();
+	}
+
+	/**
+	 * Counts a delivered {@link Letter} and tells the sender to acknowledge it if the opposite side asked for it.
+	 */
+	private void delivered() {
+		delivered.incrementAndGet();
+		// one pending acknowledgement covers any letter that is delivered before it is sent
+		if (acknowledging && acknowledgementPending.compareAndSet(false, true))
+			outbox.addFirst(ACKNOWLEDGE);
+	}
+
+	/**
+	 * Forgets the {@link Letter}s the opposite side has acknowledged.
+	 *
+	 * @param count the number of {@link Letter}s the opposite side has delivered on this connection
+	 */
+	private void acknowledged(long count) {
+		for (long i = acknowledged; i < count; i++)
+			unacknowledged.poll();
+		release(Math.max(count - acknowledged, 0));
+		acknowledged = Math.max(acknowledged, count);
+	}
+
+	private class Supervisor extends Thread {
 
 		@Override
 		public void run() {
-			// open input reader
-			BufferedReader in = openInput();
+			long delay = initialDelay;
+			while (!stopping) {
+				Link next;
+				try {
+					next = connector.connect();
+					applyProfile(next);
+				} catch (IOException | RuntimeException e) {
+					Logger.info("cannot connect, trying again in {0} ms: {1}", delay / 1000000, e);
+					backOff(delay);
+					delay = Math.min(2 * delay, maxDelay);
+					continue;
+				}
+				delay = initialDelay;
 
-			// report recipients that the connection was established and the postman will start delivering letters now
-			reportStart();
+				synchronized (failing) {
+					if (stopping) {
+						close(next);
+						break;
+					}
+					link = next;
+					open();
+				}
 
-			// receive letters
-			try {
-				Letter letter = serializer.decodeNext(in);
-				while (letter != null) {
-					deliver(letter);
-					letter = serializer.decodeNext(in);
+				// interrupts only wake up the backoff
+				while (receiver.isAlive()) {
+					try {
+						receiver.join();
+					} catch (InterruptedException e) {
+						// check again
+					}
+				}
+
+				if (!stopping) {
+					Logger.info("connection lost, reconnecting in {0} ms", delay / 1000000);
+					backOff(delay);
 				}
+			}
+
+			stopped();
+		}
+
+		private void backOff(long delay) {
+			long jitter = ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay - jitter);
+			} catch (InterruptedException e) {
+				// this postman was told to stop
+			}
+		}
+
+		private void close(Link link) {
+			try {
+				link.close();
 			} catch (IOException e) {
-				Logger.error(e);
-				System.exit(1);
+				Logger.warn("cannot close the link: {0}", e);
 			}
+		}
 
-            // report to recipients that the last letter was delivered and the connection will close now
-            reportStop();
+	}
 
-			// close sender: receiving EOF shows that the opposite site wants to close the connection
-			sender.interrupt();
+	private class Sender extends Thread {
+
+		private final LoopbackLink carrier = carrier();
+		// letters are kept until the opposite side acknowledges them, which requires encoding
+		private final boolean retain = (connector != null || window > 0) && carrier == null;
+		private FrameWriter out;
+		private final FlushPolicy flushing = new FlushPolicy(coalescing);
+
+		@Override
+		public void run() {
+			try {
+				transmit();
+			} finally {
+				// a borrowed buffer goes back to the pool however the connection ended
+				if (out != null) out.release();
+
+				// without a next connection, whatever was not sent is lost
+				if (aborted && (connector == null || stopping)) discard();
+			}
+		}
+
+		// empties the outbox, so that a parcel that opened its file closes it
+		private void discard() {
+			Object item;
+			while ((item = outbox.poll()) != null) {
+				if (item instanceof Parcel) {
+					try {
+						((Parcel) item).discard();
+					} catch (IOException e) {
+						Logger.warn("cannot close a parcel that was not sent: {0}", e);
+					}
+				}
+			}
+		}
+
+		private void transmit() {
+			// open output writer
+			if (carrier == null) {
+				out = openOutput();
+				if (out == null) return;
+			}
+
+			// ask the opposite side for acknowledgements before any letter
+			if (retain) {
+				try {
+					control(REQUEST, "");
+				} catch (IOException | RuntimeException e) {
+					fail(e);
+					return;
+				}
+			}
+
+			// send letters
 			try {
-				sender.join();
+				Object item = next();
+				while (item != STOP) {
+					send(item);
+					settle();
+					item = next();
+				}
 			} catch (InterruptedException e) {
-				Logger.error(e);
-				System.exit(1);
+				// reset interrupt status
+				this.interrupt();
+			} catch (IOException | RuntimeException e) {
+				// if this postman was aborted, it closed the link itself and the error is ignored
+				fail(e);
+				return;
+			}
+
+			// a lost connection must not take the outbox with it: a supervisor sends it through the next one
+			if (aborted)
+				return;
+
+			// clean up
+			try {
+				Object item;
+				while ((item = outbox.poll()) != null)
+					if (item != STOP && item != ACKNOWLEDGE) send(item);
+				flush();
+
+				// close the postman output
+				link.shutdownOutput();
+			} catch (IOException | RuntimeException e) {
+				fail(e);
+			}
+		}
+
+		private Object next() throws InterruptedException, IOException {
+			if (heartbeat == 0 || carrier != null)
+				return outbox.take();
+
+			Object result = outbox.poll(heartbeat, TimeUnit.NANOSECONDS);
+			while (result == null) {
+				control(HEARTBEAT, "");
+				flush();
+
+				result = outbox.poll(heartbeat, TimeUnit.NANOSECONDS);
+			}
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void send(Object item) throws IOException {
+			if (item == ACKNOWLEDGE) {
+				// letters that are delivered from now on need another acknowledgement
+				acknowledgementPending.set(false);
+				if (carrier == null) control(ACKNOWLEDGEMENT, Long.toString(delivered.get()));
+			} else if (carrier != null) {
+				carrier.post(item);
+				if (!(item instanceof Parcel)) release(1);
+			} else if (item instanceof Parcel) {
+				ship((Parcel) item);
+			} else {
+				if (retain) unacknowledged.add(item);
+				serializer.encodeNext(out, (Letter) item);
+			}
+		}
+
+		private void control(char kind, String content) throws IOException {
+			out.write(CONTROL);
+			out.write(kind);
+			out.write(content);
+			out.write(serializer.separator());
+		}
+
+		// flushes if the outbox ran empty, unless the next letter is likely to come in a moment
+		private void settle() throws IOException, InterruptedException {
+			if (out == null) return;
+
+			long now = System.nanoTime();
+			flushing.written(now);
+
+			if (!outbox.isEmpty()) {
+				if (flushing.overdue(now)) flush();
+				return;
+			}
+
+			long linger = flushing.linger(now);
+			if (linger > 0) {
+				boolean arrived = outbox.await(linger, TimeUnit.NANOSECONDS);
+				flushing.lingered(arrived);
+				if (arrived) return;
+			}
+			flush();
+		}
+
+		private void flush() throws IOException {
+			if (out != null) {
+				out.flush();
+				flushing.flushed();
+			}
+		}
+
+		private void ship(Parcel parcel) throws IOException {
+			control(PARCEL, Long.toString(parcel.size()));
+			flush();
+
+			parcel.transferTo(link.getOutputChannel());
+		}
+
+		private FrameWriter openOutput() {
+			FrameWriter result = null;
+
+			try {
+				int outBuffer = link.getSendBufferSize();
+				OutputStream outStream = link.getOutputStream();
+				result = pool == null
+						? new FrameWriter(outStream, charset, outBuffer)
+						: new FrameWriter(outStream, charset, pool);
+			} catch (IOException e) {
+				fail(e);
+			}
+
+			return result;
+		}
+
+	}
+
+	private class Receiver extends Thread {
+
+		@Override
+		public void run() {
+			// open input reader
+			LoopbackLink carrier = carrier();
+			FrameReader in = carrier == null ? openInput() : null;
+
+			// receive letters
+			try {
+				// report recipients that the connection was established and the postman will start delivering now
+				reportStart();
+
+				// the input is missing if this postman was aborted before it was opened
+				if (carrier != null)
+					receive(carrier);
+				else if (in != null && decoder == null)
+					receive(in);
+				else if (in != null)
+					receiveParallel(in);
+			} catch (IOException | RuntimeException e) {
+				// if this postman was aborted, it closed the link itself: this is like EOF
+				fail(e);
+			}
+			if (in != null) in.release();
+
+			// report to recipients why the connection failed, if it did
+			try {
+				if (failure != null)
+					reportError(failure);
+			} catch (RuntimeException e) {
+				fail(e);
 			}
 
+			// report to recipients that the last letter was delivered and the connection will close now
+			try {
+				reportStop();
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+
+			// a supervisor reconnects unless this postman was told to stop: the sender must keep the outbox
+			if (connector != null && !stopping) {
+				synchronized (failing) {
+					aborted = true;
+				}
+				try {
+					link.close();
+				} catch (IOException e) {
+					Logger.warn("cannot close the link: {0}", e);
+				}
+			}
+
+			// close sender: receiving EOF shows that the opposite site wants to close the connection
+			outbox.add(STOP);
+			boolean interrupted = false;
+			while (sender.isAlive()) {
+				try {
+					sender.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) this.interrupt();
+
 			// close socket
 			try {
-				socket.close();
+				link.close();
 			} catch (IOException e) {
-				Logger.error(e);
-				System.exit(1);
+				Logger.warn("cannot close the link: {0}", e);
+			}
+
+			// a supervisor keeps the window open until it stops
+			if (connector == null)
+				stopped();
+		}
+
+		@SuppressWarnings("unchecked")
+		private void receive(LoopbackLink carrier) throws IOException {
+			Object item = carrier.take();
+			while (item != null) {
+				lastReceived = System.nanoTime();
+				if (item instanceof Parcel)
+					store((Parcel) item);
+				else
+					deliver((Letter) item);
+				item = carrier.take();
+			}
+		}
+
+		private void store(Parcel parcel) throws IOException {
+			if (warehouse == null) {
+				Logger.warn("discarding a parcel of {0} bytes because no warehouse was given", parcel.size());
+				parcel.discard();
+			} else {
+				WritableByteChannel target = warehouse.store(parcel.size(), Postman.this);
+				try {
+					parcel.transferTo(target);
+				} catch (IOException | RuntimeException e) {
+					abort(target);
+					throw e;
+				}
+				warehouse.stored(target, Postman.this);
+			}
+		}
+
+		private void receive(FrameReader in) throws IOException {
+			String rawLetter = serializer.readNext(in);
+			while (rawLetter != null) {
+				lastReceived = System.nanoTime();
+				if (isControl(rawLetter)) {
+					control(in, rawLetter);
+				} else {
+					Letter letter = serializer.decode(rawLetter);
+					if (letter != null) deliver(letter);
+					delivered();
+				}
+				rawLetter = serializer.readNext(in);
+			}
+		}
+
+		private void receiveParallel(FrameReader in) throws IOException {
+			Dispatcher dispatcher = new Dispatcher();
+			dispatcher.start();
+
+			try {
+				String rawLetter = serializer.readNext(in);
+				while (rawLetter != null) {
+					lastReceived = System.nanoTime();
+					if (isControl(rawLetter))
+						control(in, rawLetter);
+					else
+						dispatcher.decode(rawLetter);
+					rawLetter = serializer.readNext(in);
+				}
+			} finally {
+				// the letters that were received before are delivered in any case
+				dispatcher.finish();
+			}
+		}
+
+		private boolean isControl(String rawLetter) {
+			return rawLetter.length() > 1 && rawLetter.charAt(0) == CONTROL;
+		}
+
+		private void control(FrameReader in, String frame) throws IOException {
+			switch (frame.charAt(1)) {
+				case PARCEL:
+					long size = Long.parseLong(frame.substring(2));
+					if (warehouse == null) {
+						Logger.warn("discarding a parcel of {0} bytes because no warehouse was given", size);
+						in.transferTo(null, size);
+					} else {
+						WritableByteChannel target = warehouse.store(size, Postman.this);
+						try {
+							if (in.transferTo(target, size) < size)
+								throw new EOFException("connection closed while receiving a parcel");
+						} catch (IOException | RuntimeException e) {
+							abort(target);
+							throw e;
+						}
+						warehouse.stored(target, Postman.this);
+					}
+					break;
+				case HEARTBEAT:
+					// receiving it was all it had to do
+					break;
+				case REQUEST:
+					acknowledging = true;
+					break;
+				case ACKNOWLEDGEMENT:
+					acknowledged(Long.parseLong(frame.substring(2)));
+					break;
+				default:
+					Logger.warn("ignoring an unknown control frame of kind {0}", frame.charAt(1));
 			}
+		}
 
+		// tells the warehouse that a parcel was not received completely, without hiding why
+		private void abort(WritableByteChannel target) {
+			try {
+				warehouse.abort(target, Postman.this);
+			} catch (IOException | RuntimeException e) {
+				Logger.warn("cannot abort storing a parcel: {0}", e);
+			}
 		}
 
-		private BufferedReader openInput() {
-			BufferedReader result = null;
+		private FrameReader openInput() {
+			FrameReader result = null;
 
 			try {
-				int inBuffer = socket.getReceiveBufferSize();
-				InputStream inStream = socket.getInputStream();
-				result =  new BufferedReader(new InputStreamReader(inStream), inBuffer);
+				int inBuffer = link.getReceiveBufferSize();
+				InputStream inStream = link.getInputStream();
+				result = pool == null
+						? new FrameReader(inStream, charset, inBuffer)
+						: new FrameReader(inStream, charset, pool);
 			} catch (IOException e) {
-				Logger.error(e);
-				System.exit(1);
+				fail(e);
 			}
 
 			return result;
@@ -423,4 +1784,86 @@ public abstract class Postman<Letter> implements Cloneable {
 
 	}
 
+	private class Dispatcher extends Thread {
+
+		private final BlockingQueue<Future<Letter>> decoded = new LinkedBlockingQueue<>();
+		private final Semaphore window = new Semaphore(DECODE_WINDOW);
+
+		private final Future<Letter> end = new FutureTask<>(new Callable<Letter>() {
+			@Override
+			public Letter call() {
+				return null;
+			}
+		});
+
+		public void decode(final String rawLetter) throws InterruptedIOException {
+			Callable<Letter> decoding = new Callable<Letter>() {
+				@Override
+				public Letter call() {
+					return serializer.decode(rawLetter);
+				}
+			};
+
+			try {
+				window.acquire();
+
+				try {
+					if (observeDecodeOrder) {
+						decoded.put(decoder.submit(decoding));
+					} else {
+						// a letter is enqueued once it was decoded
+						decoder.execute(new FutureTask<Letter>(decoding) {
+							@Override
+							protected void done() {
+								decoded.add(this);
+							}
+						});
+					}
+				} catch (RejectedExecutionException e) {
+					// e.g. the executor was shut down: finish() must not wait for this permit
+					window.release();
+					fail(e);
+					throw e;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+
+		public void finish() throws InterruptedIOException {
+			try {
+				// any permit comes back as soon as its letter was delivered
+				window.acquire(DECODE_WINDOW);
+				decoded.put(end);
+				this.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Future<Letter> next = decoded.take();
+				while (next != end) {
+					Letter letter = next.get();
+					window.release();
+					if (letter != null) deliver(letter);
+					delivered();
+					next = decoded.take();
+				}
+			} catch (ExecutionException e) {
+				fail(e.getCause());
+			} catch (InterruptedException | RuntimeException e) {
+				fail(e);
+			} finally {
+				// the receiving thread must not wait for letters that will never be delivered
+				window.release(DECODE_WINDOW);
+			}
+		}
+
+	}
+
 }
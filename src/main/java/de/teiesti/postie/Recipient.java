@@ -37,4 +37,16 @@ public interface Recipient<Letter> {
 	 */
 	public void noticeStop(Postman from);
 
+	/**
+	 * Indicates that the connection of a given {@link Postman} failed, e.g. because the opposite side vanished, a
+	 * received {@link Letter} could not be decoded or a {@link Recipient} threw an exception. The {@link Postman} has
+	 * already closed the connection. Any {@link Letter} that was received before the error was delivered.
+	 * {@link #noticeStop(Postman)} follows directly afterwards. Only this connection is affected; other
+	 * {@link Postman}s keep running.
+	 *
+	 * @param error the error that made the connection fail
+	 * @param from the {@link Postman} that failed
+	 */
+	public void noticeError(Throwable error, Postman from);
+
 }
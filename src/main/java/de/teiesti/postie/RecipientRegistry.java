@@ -0,0 +1,153 @@
+package de.teiesti.postie;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link RecipientRegistry} is a {@link java.util.Set} of {@link Recipient}s that is cheap to change and cheap to
+ * iterate. Unlike a {@link java.util.concurrent.CopyOnWriteArraySet}, adding or removing a {@link Recipient} neither
+ * copies the whole {@link java.util.Set} nor scans it: the {@link Recipient}s are held in a {@link LinkedHashSet}.
+ * Iterating works on a snapshot array that is built the first time the {@link Recipient}s are iterated after a change
+ * and reused until the next change. Thus many changes between two deliveries cost a single snapshot, and deliveries
+ * without any change in between do not cost any snapshot at all. However, building a snapshot copies all
+ * {@link Recipient}s: if the {@link Recipient}s change between any two deliveries, each delivery still costs time
+ * linear in the number of {@link Recipient}s, like each change does with a
+ * {@link java.util.concurrent.CopyOnWriteArraySet}.<br>
+ * <br>
+ * {@link #contains(Object)} does not take any lock, because a {@link Postman} asks it for each letter it routes. It
+ * looks the {@link Recipient} up in a concurrent {@link java.util.Set} that is changed along with the ordered one.<br>
+ * <br>
+ * An iteration sees the {@link Recipient}s of a single snapshot, however they are changed meanwhile. It sees them in
+ * the order they were added, like a {@link java.util.concurrent.CopyOnWriteArraySet} does, so a {@link Postman}
+ * reports to its {@link Recipient}s in the order they were registered.<br>
+ * <br>
+ * All provided methods are thread-safe.
+ *
+ * @param <Letter> type of the letters
+ */
+final class RecipientRegistry<Letter> extends AbstractSet<Recipient<Letter>> {
+
+	private final Set<Recipient<Letter>> members = new LinkedHashSet<>();
+	// the same recipients for lookups without the lock, modified under the lock of members
+	private final Set<Recipient<Letter>> index =
+			Collections.newSetFromMap(new ConcurrentHashMap<Recipient<Letter>, Boolean>());
+	// null if the members were changed since the last snapshot, modified under the lock of members
+	private volatile Recipient[] snapshot = new Recipient[0];
+
+	/**
+	 * Creates an empty {@link RecipientRegistry}.
+	 */
+	RecipientRegistry() {}
+
+	/**
+	 * Creates a {@link RecipientRegistry} that contains the given {@link Recipient}s.
+	 *
+	 * @param recipients the {@link Recipient}s
+	 */
+	RecipientRegistry(Collection<? extends Recipient<Letter>> recipients) {
+		addAll(recipients);
+	}
+
+	@Override
+	public boolean add(Recipient<Letter> recipient) {
+		synchronized (members) {
+			if (!members.add(recipient))
+				return false;
+
+			index.add(recipient);
+			snapshot = null;
+			return true;
+		}
+	}
+
+	@Override
+	public boolean remove(Object recipient) {
+		synchronized (members) {
+			if (!members.remove(recipient))
+				return false;
+
+			index.remove(recipient);
+			snapshot = null;
+			return true;
+		}
+	}
+
+	@Override
+	public boolean contains(Object recipient) {
+		// a concurrent set cannot hold null
+		return recipient != null && index.contains(recipient);
+	}
+
+	@Override
+	public int size() {
+		synchronized (members) {
+			return members.size();
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (members) {
+			members.clear();
+			index.clear();
+			snapshot = null;
+		}
+	}
+
+	@Override
+	public Iterator<Recipient<Letter>> iterator() {
+		final Recipient[] recipients = snapshot();
+
+		return new Iterator<Recipient<Letter>>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < recipients.length;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public Recipient<Letter> next() {
+				if (next == recipients.length)
+					throw new NoSuchElementException();
+				return recipients[next++];
+			}
+
+			@Override
+			public void remove() {
+				if (next == 0)
+					throw new IllegalStateException();
+				RecipientRegistry.this.remove(recipients[next - 1]);
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the current snapshot of the {@link Recipient}s in the order they were added. The result must not be
+	 * modified.
+	 *
+	 * @return the {@link Recipient}s
+	 */
+	Recipient[] snapshot() {
+		Recipient[] result = snapshot;
+		if (result != null)
+			return result;
+
+		synchronized (members) {
+			// another thread may have built it meanwhile
+			if (snapshot == null)
+				snapshot = members.toArray(new Recipient[members.size()]);
+			return snapshot;
+		}
+	}
+
+}
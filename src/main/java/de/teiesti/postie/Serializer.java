@@ -6,7 +6,10 @@ import java.io.Writer;
 
 /**
  * A {@link Serializer} encodes {@link Letter} into a {@link String} or vice versa. Any implementation should be
- * thread-safe. It should not save any state.
+ * thread-safe. It should not save any state.<br>
+ * <br>
+ * An encoded {@link Letter} must not start with the character {@code '\u0000'}. A {@link Postman} reserves it to
+ * introduce its own control frames.
  *
  * @param <Letter> type of the letters
  */
@@ -50,6 +53,20 @@ public interface Serializer<Letter> {
 	 */
 	public Letter decodeNext(Reader reader) throws IOException;
 
+	/**
+	 * Reads the next raw {@link Letter} from a {@link Reader} without decoding it. A raw {@link Letter} is everything
+	 * that was read before the next separator: A separator is what {@link #separator()} returns. The separator itself
+	 * is consumed but not part of the result. Decoding the result with {@link #decode(String)} must give the same
+	 * {@link Letter} as {@link #decodeNext(Reader)} would have returned.
+	 *
+	 * @param reader the {@link Reader}
+	 * @return the raw {@link Letter} or {@code null} if the {@link Reader} reached its end before any character was
+	 * read
+	 *
+	 * @throws IOException if there is a problem with {@link Reader}
+	 */
+	public String readNext(Reader reader) throws IOException;
+
 	/**
 	 * Returns a {@link String} that separates two string-encodes {@link Letter}s.
 	 * @return the separator string
@@ -0,0 +1,224 @@
+package de.teiesti.postie;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * A {@link SocketProfile} describes the options of a {@link Socket}: {@code TCP_NODELAY}, the send and receive buffer
+ * sizes, keep-alive, the traffic class and linger. A {@link Postman} applies its {@link SocketProfile} (see
+ * {@link Postman#tune(SocketProfile)}) to the {@link Socket} it was bound to when it starts. An {@link Office} applies
+ * its {@link SocketProfile} (see {@link Office#tune(SocketProfile)}) to any connection it accepts.<br>
+ * <br>
+ * Any option that was not set is left as it is. Use {@link #latency()} or {@link #throughput()} for a preset and
+ * change single options if necessary. The options are only hints to the operating system which may ignore them or
+ * adjust the values.
+ */
+public class SocketProfile {
+
+	/**
+	 * Traffic class that asks for low delay (see {@link Socket#setTrafficClass(int)}).
+	 */
+	public static final int IPTOS_LOWDELAY = 0x10;
+
+	/**
+	 * Traffic class that asks for high throughput (see {@link Socket#setTrafficClass(int)}).
+	 */
+	public static final int IPTOS_THROUGHPUT = 0x08;
+
+	private Boolean noDelay;
+	private Integer sendBufferSize;
+	private Integer receiveBufferSize;
+	private Boolean keepAlive;
+	private Integer trafficClass;
+	private Integer linger;
+
+	/**
+	 * Creates a new {@link SocketProfile} for connections that exchange small letters and need short response times.
+	 * It disables Nagle's algorithm, so a flushed letter is sent at once, asks for low delay and keeps idle
+	 * connections alive. The buffer sizes are left to the operating system.
+	 *
+	 * @return the {@link SocketProfile}
+	 */
+	public static SocketProfile latency() {
+		return new SocketProfile()
+				.noDelay(true)
+				.keepAlive(true)
+				.trafficClass(IPTOS_LOWDELAY);
+	}
+
+	/**
+	 * Creates a new {@link SocketProfile} for connections that transfer many or large letters and parcels. It keeps
+	 * Nagle's algorithm, asks for high throughput, keeps idle connections alive and uses buffers of 1 MiB. A
+	 * {@link Postman} uses a buffer of the same size for its output.
+	 *
+	 * @return the {@link SocketProfile}
+	 */
+	public static SocketProfile throughput() {
+		return new SocketProfile()
+				.noDelay(false)
+				.keepAlive(true)
+				.trafficClass(IPTOS_THROUGHPUT)
+				.sendBufferSize(1 << 20)
+				.receiveBufferSize(1 << 20);
+	}
+
+	/**
+	 * Sets weather Nagle's algorithm should be disabled (see {@link Socket#setTcpNoDelay(boolean)}).
+	 *
+	 * @param noDelay {@code true} to disable Nagle's algorithm
+	 *
+	 * @return this {@link SocketProfile}
+	 */
+	public SocketProfile noDelay(boolean noDelay) {
+		this.noDelay = noDelay;
+		return this;
+	}
+
+	/**
+	 * Sets the send buffer size (see {@link Socket#setSendBufferSize(int)}).
+	 *
+	 * @param size the size in bytes
+	 *
+	 * @return this {@link SocketProfile}
+	 *
+	 * @throws IllegalArgumentException if {@code size} is less than {@code 1}
+	 */
+	public SocketProfile sendBufferSize(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("size < 1");
+
+		this.sendBufferSize = size;
+		return this;
+	}
+
+	/**
+	 * Sets the receive buffer size (see {@link Socket#setReceiveBufferSize(int)}). An {@link Office} sets it on its
+	 * {@link ServerSocket} too, because a receive buffer larger than 64 KiB must be requested before the connection is
+	 * established.
+	 *
+	 * @param size the size in bytes
+	 *
+	 * @return this {@link SocketProfile}
+	 *
+	 * @throws IllegalArgumentException if {@code size} is less than {@code 1}
+	 */
+	public SocketProfile receiveBufferSize(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("size < 1");
+
+		this.receiveBufferSize = size;
+		return this;
+	}
+
+	/**
+	 * Sets weather the operating system should probe idle connections (see {@link Socket#setKeepAlive(boolean)}).
+	 *
+	 * @param keepAlive {@code true} to enable keep-alive
+	 *
+	 * @return this {@link SocketProfile}
+	 */
+	public SocketProfile keepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+		return this;
+	}
+
+	/**
+	 * Sets the traffic class (see {@link Socket#setTrafficClass(int)}), e.g. {@link #IPTOS_LOWDELAY} or
+	 * {@link #IPTOS_THROUGHPUT}.
+	 *
+	 * @param trafficClass the traffic class
+	 *
+	 * @return this {@link SocketProfile}
+	 *
+	 * @throws IllegalArgumentException if {@code trafficClass} is not between {@code 0} and {@code 255}
+	 */
+	public SocketProfile trafficClass(int trafficClass) {
+		if (trafficClass < 0 || trafficClass > 255)
+			throw new IllegalArgumentException("trafficClass < 0 || trafficClass > 255");
+
+		this.trafficClass = trafficClass;
+		return this;
+	}
+
+	/**
+	 * Sets how long closing a connection may block to send remaining data (see
+	 * {@link Socket#setSoLinger(boolean, int)}). A negative value disables linger.
+	 *
+	 * @param seconds the linger timeout in seconds or a negative value to disable linger
+	 *
+	 * @return this {@link SocketProfile}
+	 */
+	public SocketProfile linger(int seconds) {
+		this.linger = seconds < 0 ? -1 : seconds;
+		return this;
+	}
+
+	/**
+	 * Applies this {@link SocketProfile} to the given {@link Socket}.
+	 *
+	 * @param socket the {@link Socket}
+	 *
+	 * @throws IOException if an option cannot be set, e.g. because the {@link Socket} is closed
+	 * @throws IllegalArgumentException if {@code socket} is {@code null}
+	 */
+	public void applyTo(Socket socket) throws IOException {
+		if (socket == null)
+			throw new IllegalArgumentException("socket == null");
+
+		if (noDelay != null) socket.setTcpNoDelay(noDelay);
+		if (sendBufferSize != null) socket.setSendBufferSize(sendBufferSize);
+		if (receiveBufferSize != null) socket.setReceiveBufferSize(receiveBufferSize);
+		if (keepAlive != null) socket.setKeepAlive(keepAlive);
+		if (trafficClass != null) socket.setTrafficClass(trafficClass);
+		if (linger != null) socket.setSoLinger(linger >= 0, Math.max(linger, 0));
+	}
+
+	/**
+	 * Applies the receive buffer size of this {@link SocketProfile} to the given {@link ServerSocket}. The other
+	 * options belong to the accepted {@link Socket}s.
+	 *
+	 * @param serverSocket the {@link ServerSocket}
+	 *
+	 * @throws IOException if the option cannot be set, e.g. because the {@link ServerSocket} is closed
+	 * @throws IllegalArgumentException if {@code serverSocket} is {@code null}
+	 */
+	public void applyTo(ServerSocket serverSocket) throws IOException {
+		if (serverSocket == null)
+			throw new IllegalArgumentException("serverSocket == null");
+
+		if (receiveBufferSize != null) serverSocket.setReceiveBufferSize(receiveBufferSize);
+	}
+
+	/**
+	 * Applies this {@link SocketProfile} to the given {@link NetworkChannel}, e.g. a
+	 * {@link java.nio.channels.SocketChannel} or a {@link java.nio.channels.ServerSocketChannel}. Options the
+	 * {@link NetworkChannel} does not support are skipped. A Unix domain socket, for example, supports only the
+	 * buffer sizes.
+	 *
+	 * @param channel the {@link NetworkChannel}
+	 *
+	 * @throws IOException if an option cannot be set, e.g. because the {@link NetworkChannel} is closed
+	 * @throws IllegalArgumentException if {@code channel} is {@code null}
+	 */
+	public void applyTo(NetworkChannel channel) throws IOException {
+		if (channel == null)
+			throw new IllegalArgumentException("channel == null");
+
+		set(channel, StandardSocketOptions.TCP_NODELAY, noDelay);
+		set(channel, StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+		set(channel, StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+		set(channel, StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+		set(channel, StandardSocketOptions.IP_TOS, trafficClass);
+		set(channel, StandardSocketOptions.SO_LINGER, linger);
+	}
+
+	private static <T> void set(NetworkChannel channel, SocketOption<T> option, T value) throws IOException {
+		if (value != null && channel.supportedOptions().contains(option))
+			channel.setOption(option, value);
+	}
+
+}
@@ -0,0 +1,56 @@
+package de.teiesti.postie;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link Warehouse} stores the {@link Parcel}s a {@link Postman} receives. To use a {@link Warehouse}, pass it to
+ * {@link Postman#store(Warehouse)}. For each received {@link Parcel} the {@link Postman} calls {@link #store(long,
+ * Postman)} to obtain a target, writes the bytes of the {@link Parcel} into it and calls
+ * {@link #stored(WritableByteChannel, Postman)}. If the connection fails before all bytes were written, the
+ * {@link Postman} calls {@link #abort(WritableByteChannel, Postman)} instead. These methods are called from the
+ * {@link Thread} that receives from the connection. Therefore they should not block for long. A {@link Warehouse} may
+ * be used by several {@link Postman}s at once.
+ */
+public interface Warehouse {
+
+	/**
+	 * Returns the {@link WritableByteChannel} the bytes of a {@link Parcel} with the given size should be written
+	 * to.
+	 *
+	 * @param size the size of the {@link Parcel}
+	 * @param from the {@link Postman} that receives the {@link Parcel}
+	 *
+	 * @return the {@link WritableByteChannel} to write to
+	 *
+	 * @throws IOException if no target can be provided
+	 */
+	public WritableByteChannel store(long size, Postman from) throws IOException;
+
+	/**
+	 * Indicates that all bytes of a {@link Parcel} were written to the given {@link WritableByteChannel} which was
+	 * returned by {@link #store(long, Postman)} before. The {@link Postman} does not close the
+	 * {@link WritableByteChannel}.
+	 *
+	 * @param target the {@link WritableByteChannel} the {@link Parcel} was written to
+	 * @param from the {@link Postman} that received the {@link Parcel}
+	 *
+	 * @throws IOException if there is a problem with the {@link WritableByteChannel}
+	 */
+	public void stored(WritableByteChannel target, Postman from) throws IOException;
+
+	/**
+	 * Indicates that a {@link Parcel} could not be received completely, e.g. because the connection was closed while
+	 * its bytes were written to the given {@link WritableByteChannel}, which was returned by
+	 * {@link #store(long, Postman)} before. The {@link WritableByteChannel} should be closed and whatever it has
+	 * written should be thrown away. The {@link Postman} does not call {@link #stored(WritableByteChannel, Postman)}
+	 * for this {@link WritableByteChannel}.
+	 *
+	 * @param target the {@link WritableByteChannel} the {@link Parcel} was partially written to
+	 * @param from the {@link Postman} that failed to receive the {@link Parcel}
+	 *
+	 * @throws IOException if there is a problem with the {@link WritableByteChannel}
+	 */
+	public void abort(WritableByteChannel target, Postman from) throws IOException;
+
+}
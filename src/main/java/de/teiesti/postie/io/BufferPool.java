@@ -0,0 +1,99 @@
+package de.teiesti.postie.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link BufferPool} lends byte buffers of a fixed size to {@link FrameReader}s and {@link FrameWriter}s. A
+ * {@link FrameReader} or {@link FrameWriter} that was given a {@link BufferPool} borrows a buffer only while it is
+ * actually reading or writing and gives it back as soon as it is idle. Thus thousands of mostly idle connections
+ * share a few buffers instead of holding one per direction each, which keeps the heap small and the garbage
+ * collector calm.<br>
+ * <br>
+ * A {@link BufferPool} keeps at most a given number of buffers that were given back. If there is no buffer left, a
+ * new one is created. A buffer that is given back while the {@link BufferPool} is full is left to the garbage
+ * collector.<br>
+ * <br>
+ * All provided methods are thread-safe.
+ */
+public class BufferPool {
+
+	private final int bufferSize;
+	private final int capacity;
+
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * Creates a new {@link BufferPool}.
+	 *
+	 * @param bufferSize the size of each buffer in bytes
+	 * @param capacity the maximal number of buffers to keep
+	 *
+	 * @throws IllegalArgumentException if {@code bufferSize} is less than {@code 16} or {@code capacity} is negative
+	 */
+	public BufferPool(int bufferSize, int capacity) {
+		// a buffer must hold at least the longest byte sequence that makes up a single character
+		if (bufferSize < 16)
+			throw new IllegalArgumentException("bufferSize < 16");
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity < 0");
+
+		this.bufferSize = bufferSize;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the size of each buffer.
+	 *
+	 * @return the size in bytes
+	 */
+	public int bufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Returns the number of buffers that are kept for borrowing at the moment.
+	 *
+	 * @return the number of buffers
+	 */
+	public int pooled() {
+		return pooled.get();
+	}
+
+	/**
+	 * Borrows a buffer. The buffer is cleared. It is backed by an array.
+	 *
+	 * @return the buffer
+	 */
+	public ByteBuffer borrow() {
+		ByteBuffer result = buffers.poll();
+		if (result == null)
+			return ByteBuffer.allocate(bufferSize);
+
+		pooled.decrementAndGet();
+		result.clear();
+		return result;
+	}
+
+	/**
+	 * Gives a buffer back. The buffer must not be used afterwards.
+	 *
+	 * @param buffer the buffer that was borrowed from this {@link BufferPool}
+	 *
+	 * @throws IllegalArgumentException if {@code buffer} is {@code null} or has another size
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null)
+			throw new IllegalArgumentException("buffer == null");
+		if (buffer.capacity() != bufferSize)
+			throw new IllegalArgumentException("buffer.capacity() != " + bufferSize);
+
+		if (pooled.incrementAndGet() <= capacity)
+			buffers.add(buffer);
+		else
+			pooled.decrementAndGet();
+	}
+
+}
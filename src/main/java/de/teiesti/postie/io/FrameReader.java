@@ -0,0 +1,462 @@
+package de.teiesti.postie.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A {@link FrameReader} is a {@link Reader} that decodes characters from an {@link InputStream}. Unlike an
+ * {@link java.io.InputStreamReader}, a {@link FrameReader} does never decode more characters than it was asked for.
+ * The bytes that follow the last returned character stay untouched in the buffer of this {@link FrameReader}.
+ * Therefore it is possible to read raw bytes between two characters with {@link #transferTo(WritableByteChannel,
+ * long)}. This allows to embed binary data into a character stream.<br>
+ * <br>
+ * If the {@link Charset} is UTF-8 or US-ASCII, a {@link FrameReader} copies ASCII bytes into characters without
+ * passing them to the {@link CharsetDecoder}, which is most efficient for mostly ASCII text like JSON.<br>
+ * <br>
+ * {@link #readFrame(String)} reads everything up to the next separator at once. With UTF-8 or US-ASCII and an ASCII
+ * separator, it searches the separator in the bytes and decodes a frame that lies within the buffer right from there.
+ * Only a frame that spans more than one buffer is gathered before it is decoded.<br>
+ * <br>
+ * A {@link FrameReader} is buffered. One that was created with a {@link BufferPool} gives its buffer back whenever it
+ * has consumed all buffered bytes and waits for the next byte without any buffer. Thus an idle {@link FrameReader}
+ * holds no buffer. A {@link FrameReader} is not thread-safe.
+ */
+public class FrameReader extends Reader {
+
+	private final InputStream in;
+	private final Charset charset;
+	private final CharsetDecoder decoder;
+	// set if a byte below 0x80 is always the character of the same value
+	private final boolean ascii;
+
+	// null if the buffer is owned by this reader
+	private final BufferPool pool;
+
+	// an empty buffer while the buffer is given back to the pool
+	private ByteBuffer bytes;
+	private final CharBuffer pending = CharBuffer.allocate(2);
+
+	private boolean eof = false;
+	// set once the decoder was flushed at the end of the stream: it must not decode any more
+	private boolean flushed = false;
+
+	// the separator of the last frame and its bytes, which are null if it cannot be searched in the bytes
+	private String separator;
+	private byte[] separatorBytes;
+
+	// gathers the bytes or characters of a frame that spans more than one buffer
+	private byte[] spill = new byte[0];
+	private final StringBuilder frame = new StringBuilder();
+
+	/**
+	 * Creates a new {@link FrameReader} that reads from the given {@link InputStream} and decodes the bytes with the
+	 * given {@link Charset}. Malformed input is replaced like an {@link java.io.InputStreamReader} would do.
+	 *
+	 * @param in the {@link InputStream} to read from
+	 * @param charset the {@link Charset} of the characters
+	 * @param bufferSize the size of the byte buffer
+	 *
+	 * @throws IllegalArgumentException if {@code in} or {@code charset} is {@code null} or if {@code bufferSize} is
+	 * less than {@code 1}
+	 */
+	public FrameReader(InputStream in, Charset charset, int bufferSize) {
+		if (in == null)
+			throw new IllegalArgumentException("in == null");
+		if (charset == null)
+			throw new IllegalArgumentException("charset == null");
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("bufferSize < 1");
+
+		this.in = in;
+		this.charset = charset;
+		this.decoder = decoder(charset);
+		this.ascii = ascii(charset);
+		this.pool = null;
+
+		// the buffer must hold at least the longest byte sequence that makes up a single character
+		bytes = ByteBuffer.allocate(Math.max(bufferSize, 16));
+		bytes.flip();
+		pending.flip();
+	}
+
+	/**
+	 * Creates a new {@link FrameReader} that reads from the given {@link InputStream} and decodes the bytes with the
+	 * given {@link Charset}. The buffer is borrowed from the given {@link BufferPool} while there are bytes to read.
+	 * Malformed input is replaced like an {@link java.io.InputStreamReader} would do.
+	 *
+	 * @param in the {@link InputStream} to read from
+	 * @param charset the {@link Charset} of the characters
+	 * @param pool the {@link BufferPool} to borrow the buffer from
+	 *
+	 * @throws IllegalArgumentException if {@code in}, {@code charset} or {@code pool} is {@code null}
+	 */
+	public FrameReader(InputStream in, Charset charset, BufferPool pool) {
+		if (in == null)
+			throw new IllegalArgumentException("in == null");
+		if (charset == null)
+			throw new IllegalArgumentException("charset == null");
+		if (pool == null)
+			throw new IllegalArgumentException("pool == null");
+
+		this.in = in;
+		this.charset = charset;
+		this.decoder = decoder(charset);
+		this.ascii = ascii(charset);
+		this.pool = pool;
+
+		bytes = ByteBuffer.allocate(0);
+		pending.flip();
+	}
+
+	private static CharsetDecoder decoder(Charset charset) {
+		return charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	private static boolean ascii(Charset charset) {
+		return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Reads a single character. Unlike {@link Reader#read()}, this method does not create a temporary array.
+	 *
+	 * @return the character or {@code -1} if the end of the stream was reached
+	 *
+	 * @throws IOException if there is a problem with the {@link InputStream}
+	 */
+	@Override
+	public int read() throws IOException {
+		if (!pending.hasRemaining() && decodePending(1) == -1)
+			return -1;
+		return pending.get();
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+
+		// a decoded character may not fit into the given array, e.g. the second half of a surrogate pair
+		if (pending.hasRemaining()) {
+			int n = Math.min(len, pending.remaining());
+			pending.get(cbuf, off, n);
+			return n;
+		}
+
+		if (len < pending.capacity()) {
+			if (decodePending(len) == -1)
+				return -1;
+			pending.get(cbuf, off, len);
+			return len;
+		}
+
+		return decode(CharBuffer.wrap(cbuf, off, len));
+	}
+
+	// decodes a single character into pending unless it is a surrogate pair which needs more room
+	private int decodePending(int len) throws IOException {
+		pending.clear().limit(len);
+		int n = decode(pending);
+		if (n == 0) {
+			pending.limit(pending.capacity());
+			n = decode(pending);
+		}
+		pending.flip();
+		return n;
+	}
+
+	private int decode(CharBuffer out) throws IOException {
+		if (flushed)
+			return -1;
+
+		int start = out.position();
+
+		while (true) {
+			if (ascii) copyAscii(out);
+
+			// the decoder consumes only those bytes that belong to a character it could output
+			CoderResult result = decoder.decode(bytes, out, eof);
+			if (out.position() > start)
+				return out.position() - start;
+			if (result.isOverflow())
+				return 0;
+
+			if (eof) {
+				decoder.flush(out);
+				flushed = true;
+				return out.position() > start ? out.position() - start : -1;
+			}
+
+			fill();
+		}
+	}
+
+	/**
+	 * Reads the next frame. A frame is everything that is read before the next separator. The separator is consumed
+	 * but not part of the result. The bytes that follow the separator stay untouched, so
+	 * {@link #transferTo(WritableByteChannel, long)} may follow.
+	 *
+	 * @param separator the separator
+	 *
+	 * @return the frame or {@code null} if the end of the stream was reached before any character was read
+	 *
+	 * @throws IOException if there is a problem with the {@link InputStream}
+	 * @throws IllegalArgumentException if {@code separator} is {@code null} or empty
+	 */
+	public String readFrame(String separator) throws IOException {
+		if (separator == null || separator.isEmpty())
+			throw new IllegalArgumentException("separator == null || separator.isEmpty()");
+
+		if (!separator.equals(this.separator)) {
+			this.separator = separator;
+			this.separatorBytes = searchable(separator) ? separator.getBytes(charset) : null;
+		}
+
+		if (separatorBytes == null || pending.hasRemaining())
+			return readFrameByChars(separator);
+		return readFrameByBytes(separatorBytes);
+	}
+
+	private boolean searchable(String separator) {
+		if (!ascii)
+			return false;
+
+		// an ASCII byte is never part of a longer byte sequence
+		for (int i = 0; i < separator.length(); i++)
+			if (separator.charAt(i) >= 0x80)
+				return false;
+		return true;
+	}
+
+	private String readFrameByBytes(byte[] separator) throws IOException {
+		int spilled = 0;
+
+		while (true) {
+			byte[] array = bytes.array();
+			int from = bytes.arrayOffset() + bytes.position();
+			int to = bytes.arrayOffset() + bytes.limit();
+
+			int end = indexOf(array, from, to, separator);
+			if (end >= 0) {
+				bytes.position(bytes.position() + end - from + separator.length);
+				if (spilled == 0)
+					return new String(array, from, end - from, charset);
+
+				spilled = spill(spilled, array, from, end - from);
+				return spilled(spilled);
+			}
+
+			if (eof) {
+				spilled = spill(spilled, array, from, to - from);
+				bytes.position(bytes.limit());
+				return spilled == 0 ? null : spilled(spilled);
+			}
+
+			// the bytes at the end may be the beginning of the separator
+			int n = Math.max(to - from - (separator.length - 1), 0);
+			spilled = spill(spilled, array, from, n);
+			bytes.position(bytes.position() + n);
+
+			fill();
+		}
+	}
+
+	private static int indexOf(byte[] array, int from, int to, byte[] pattern) {
+		byte first = pattern[0];
+		for (int i = from; i <= to - pattern.length; i++) {
+			if (array[i] != first)
+				continue;
+
+			int j = 1;
+			while (j < pattern.length && array[i + j] == pattern[j])
+				j++;
+			if (j == pattern.length)
+				return i;
+		}
+		return -1;
+	}
+
+	private int spill(int spilled, byte[] array, int from, int n) {
+		if (spilled + n > spill.length)
+			spill = Arrays.copyOf(spill, Math.max(spilled + n, 2 * spill.length));
+		System.arraycopy(array, from, spill, spilled, n);
+		return spilled + n;
+	}
+
+	private String spilled(int spilled) {
+		String result = new String(spill, 0, spilled, charset);
+
+		// with a pool, an idle reader must not hold what a single long frame needed
+		if (pool != null && spill.length > pool.bufferSize())
+			spill = new byte[0];
+
+		return result;
+	}
+
+	private String readFrameByChars(String separator) throws IOException {
+		int c = read();
+		if (c == -1)
+			return null;
+
+		frame.setLength(0);
+		char last = separator.charAt(separator.length() - 1);
+		for (; c != -1; c = read()) {
+			frame.append((char) c);
+
+			int start = frame.length() - separator.length();
+			if (c == last && start >= 0 && endsWith(frame, start, separator)) {
+				frame.setLength(start);
+				break;
+			}
+		}
+
+		String result = frame.toString();
+
+		if (pool != null && frame.capacity() > pool.bufferSize()) {
+			frame.setLength(0);
+			frame.trimToSize();
+		}
+
+		return result;
+	}
+
+	private static boolean endsWith(StringBuilder frame, int start, String separator) {
+		for (int i = 0; i < separator.length(); i++)
+			if (frame.charAt(start + i) != separator.charAt(i))
+				return false;
+		return true;
+	}
+
+	private void copyAscii(CharBuffer out) {
+		if (!out.hasArray())
+			return;
+
+		byte[] src = bytes.array();
+		int from = bytes.arrayOffset() + bytes.position();
+		char[] dst = out.array();
+		int to = out.arrayOffset() + out.position();
+
+		int max = Math.min(bytes.remaining(), out.remaining());
+		int n = 0;
+		while (n < max && src[from + n] >= 0) {
+			dst[to + n] = (char) src[from + n];
+			n++;
+		}
+
+		bytes.position(bytes.position() + n);
+		out.position(out.position() + n);
+	}
+
+	private void fill() throws IOException {
+		if (pool != null && !bytes.hasRemaining()) {
+			// everything was consumed: the buffer is given back while waiting for the next byte
+			release();
+			int b = in.read();
+			if (b == -1) {
+				eof = true;
+				return;
+			}
+
+			bytes = pool.borrow();
+			bytes.put((byte) b);
+			try {
+				// the bytes that arrived along with the first one are read at once without blocking
+				int available = Math.min(in.available(), bytes.remaining());
+				if (available > 0) {
+					int n = in.read(bytes.array(), bytes.arrayOffset() + bytes.position(), available);
+					if (n > 0)
+						bytes.position(bytes.position() + n);
+				}
+			} finally {
+				bytes.flip();
+			}
+			return;
+		}
+
+		bytes.compact();
+		try {
+			int n = in.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+			if (n == -1)
+				eof = true;
+			else
+				bytes.position(bytes.position() + n);
+		} finally {
+			bytes.flip();
+		}
+	}
+
+	/**
+	 * Reads the given number of raw bytes and writes them to the given {@link WritableByteChannel}. The bytes are
+	 * taken from the buffer of this {@link FrameReader} first and from the underlying {@link InputStream}
+	 * afterwards. They pass through the buffer of this {@link FrameReader} without any further copy. Reading
+	 * characters afterwards continues behind the last byte that was transferred.
+	 *
+	 * @param target the {@link WritableByteChannel} to write to or {@code null} to discard the bytes
+	 * @param count the number of bytes to transfer
+	 *
+	 * @return the number of bytes that were transferred, which is less than {@code count} only if the end of the
+	 * stream was reached
+	 *
+	 * @throws IOException if there is a problem with the {@link InputStream} or the {@link WritableByteChannel}
+	 * @throws IllegalStateException if a decoded character is pending, e.g. half of a surrogate pair
+	 */
+	public long transferTo(WritableByteChannel target, long count) throws IOException {
+		if (pending.hasRemaining())
+			throw new IllegalStateException("cannot transfer bytes while a character is pending");
+
+		long remaining = count;
+		while (remaining > 0) {
+			if (!bytes.hasRemaining()) {
+				if (eof) break;
+				fill();
+				continue;
+			}
+
+			int limit = bytes.limit();
+			bytes.limit(bytes.position() + (int) Math.min(bytes.remaining(), remaining));
+			int n = bytes.remaining();
+			if (target == null)
+				bytes.position(bytes.limit());
+			else
+				while (bytes.hasRemaining()) target.write(bytes);
+			bytes.limit(limit);
+
+			remaining -= n;
+		}
+
+		return count - remaining;
+	}
+
+	/**
+	 * Gives the buffer back to the {@link BufferPool} if there is one. Bytes that were not read yet are discarded. A
+	 * {@link FrameReader} that gave its buffer back borrows a new one as soon as it receives the next byte.
+	 */
+	public void release() {
+		if (pool != null && bytes.capacity() > 0) {
+			pool.release(bytes);
+			bytes = ByteBuffer.allocate(0);
+		}
+	}
+
+	/**
+	 * Closes the underlying {@link InputStream}.
+	 *
+	 * @throws IOException if there is a problem with the {@link InputStream}
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,271 @@
+package de.teiesti.postie.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link FrameWriter} is a {@link Writer} that encodes characters into an {@link OutputStream}. It is the
+ * counterpart of a {@link FrameReader}. Unlike an {@link java.io.OutputStreamWriter} wrapped into a
+ * {@link java.io.BufferedWriter}, a {@link FrameWriter} encodes the characters directly into a single reusable byte
+ * buffer. If the {@link Charset} is UTF-8, a {@link FrameWriter} does not use a {@link CharsetEncoder} at all but
+ * encodes the characters itself, which is most efficient for mostly ASCII text like JSON. Any other {@link Charset}
+ * uses a {@link CharsetEncoder}. Unmappable characters and lone surrogates are replaced like an
+ * {@link java.io.OutputStreamWriter} would do.<br>
+ * <br>
+ * The buffer is written to the {@link OutputStream} if it is full or if this {@link FrameWriter} is flushed. A
+ * {@link FrameWriter} that was created with a {@link BufferPool} borrows its buffer with the first write and gives it
+ * back whenever it is flushed. Thus an idle {@link FrameWriter} holds no buffer. A {@link FrameWriter} is not
+ * thread-safe.
+ */
+public class FrameWriter extends Writer {
+
+	private static final byte REPLACEMENT = '?';
+
+	private final OutputStream out;
+
+	// null if the characters are encoded as UTF-8 without an encoder
+	private final CharsetEncoder encoder;
+
+	// null if the buffer is owned by this writer
+	private final BufferPool pool;
+
+	// null if the buffer was given back to the pool
+	private byte[] buffer;
+	private ByteBuffer bytes;
+	private int count = 0;
+
+	// the high surrogate of a pair whose low surrogate was not written yet, 0 if none
+	private char high = 0;
+
+	/**
+	 * Creates a new {@link FrameWriter} that encodes characters with the given {@link Charset} and writes the bytes to
+	 * the given {@link OutputStream}.
+	 *
+	 * @param out the {@link OutputStream} to write to
+	 * @param charset the {@link Charset} of the characters
+	 * @param bufferSize the size of the byte buffer
+	 *
+	 * @throws IllegalArgumentException if {@code out} or {@code charset} is {@code null} or if {@code bufferSize} is
+	 * less than {@code 1}
+	 */
+	public FrameWriter(OutputStream out, Charset charset, int bufferSize) {
+		if (out == null)
+			throw new IllegalArgumentException("out == null");
+		if (charset == null)
+			throw new IllegalArgumentException("charset == null");
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("bufferSize < 1");
+
+		this.out = out;
+		this.encoder = encoder(charset);
+		this.pool = null;
+
+		// the buffer must hold at least the longest byte sequence of a single character
+		bytes = ByteBuffer.allocate(Math.max(bufferSize, 16));
+		buffer = bytes.array();
+	}
+
+	/**
+	 * Creates a new {@link FrameWriter} that encodes characters with the given {@link Charset} and writes the bytes to
+	 * the given {@link OutputStream}. The buffer is borrowed from the given {@link BufferPool} while there are bytes
+	 * to write.
+	 *
+	 * @param out the {@link OutputStream} to write to
+	 * @param charset the {@link Charset} of the characters
+	 * @param pool the {@link BufferPool} to borrow the buffer from
+	 *
+	 * @throws IllegalArgumentException if {@code out}, {@code charset} or {@code pool} is {@code null}
+	 */
+	public FrameWriter(OutputStream out, Charset charset, BufferPool pool) {
+		if (out == null)
+			throw new IllegalArgumentException("out == null");
+		if (charset == null)
+			throw new IllegalArgumentException("charset == null");
+		if (pool == null)
+			throw new IllegalArgumentException("pool == null");
+
+		this.out = out;
+		this.encoder = encoder(charset);
+		this.pool = pool;
+	}
+
+	private static CharsetEncoder encoder(Charset charset) {
+		return charset.equals(StandardCharsets.UTF_8) ? null : charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		write(new char[] { (char) c }, 0, 1);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		if (buffer == null) borrow();
+		if (encoder != null) {
+			encode(CharBuffer.wrap(str, off, off + len));
+			return;
+		}
+
+		int end = off + len;
+		for (int i = off; i < end; ) {
+			if (count + 4 > buffer.length) drain();
+
+			char c = str.charAt(i);
+			if (c < 0x80 && high == 0) {
+				// copy a run of ASCII characters as they are
+				int stop = Math.min(end, i + buffer.length - count);
+				do {
+					buffer[count++] = (byte) c;
+				} while (++i < stop && (c = str.charAt(i)) < 0x80);
+			} else {
+				encode(c);
+				i++;
+			}
+		}
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if (buffer == null) borrow();
+		if (encoder != null) {
+			encode(CharBuffer.wrap(cbuf, off, len));
+			return;
+		}
+
+		int end = off + len;
+		for (int i = off; i < end; ) {
+			if (count + 4 > buffer.length) drain();
+
+			char c = cbuf[i];
+			if (c < 0x80 && high == 0) {
+				// copy a run of ASCII characters as they are
+				int stop = Math.min(end, i + buffer.length - count);
+				do {
+					buffer[count++] = (byte) c;
+				} while (++i < stop && (c = cbuf[i]) < 0x80);
+			} else {
+				encode(c);
+				i++;
+			}
+		}
+	}
+
+	// encodes a single character as UTF-8, requires room for four bytes
+	private void encode(char c) {
+		if (high != 0) {
+			if (Character.isLowSurrogate(c)) {
+				int codePoint = Character.toCodePoint(high, c);
+				high = 0;
+				buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+				return;
+			}
+
+			// the high surrogate has no partner: c needs three bytes at most
+			high = 0;
+			buffer[count++] = REPLACEMENT;
+		}
+
+		if (c < 0x80) {
+			buffer[count++] = (byte) c;
+		} else if (c < 0x800) {
+			buffer[count++] = (byte) (0xC0 | (c >> 6));
+			buffer[count++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c)) {
+			high = c;
+		} else if (Character.isLowSurrogate(c)) {
+			buffer[count++] = REPLACEMENT;
+		} else {
+			buffer[count++] = (byte) (0xE0 | (c >> 12));
+			buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[count++] = (byte) (0x80 | (c & 0x3F));
+		}
+	}
+
+	private void encode(CharBuffer chars) throws IOException {
+		if (high != 0) {
+			// the high surrogate that was left by the previous call is encoded together with its partner
+			CharBuffer joined = CharBuffer.allocate(chars.remaining() + 1);
+			joined.put(high).put(chars).flip();
+			high = 0;
+			chars = joined;
+		}
+
+		while (true) {
+			bytes.position(count);
+			CoderResult result = encoder.encode(chars, bytes, false);
+			count = bytes.position();
+
+			if (result.isUnderflow())
+				break;
+			drain();
+		}
+
+		// the encoder leaves a high surrogate at the end because its partner may follow
+		if (chars.hasRemaining())
+			high = chars.get();
+	}
+
+	private void drain() throws IOException {
+		if (count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	private void borrow() {
+		bytes = pool.borrow();
+		buffer = bytes.array();
+	}
+
+	/**
+	 * Writes the buffered bytes to the {@link OutputStream} and flushes it. Half of a surrogate pair stays in this
+	 * {@link FrameWriter} until its other half was written. If the buffer was borrowed from a {@link BufferPool}, it
+	 * is given back.
+	 *
+	 * @throws IOException if there is a problem with the {@link OutputStream}
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+		release();
+		out.flush();
+	}
+
+	/**
+	 * Gives the buffer back to the {@link BufferPool} if there is one. Bytes that were not flushed are discarded. A
+	 * {@link FrameWriter} that gave its buffer back borrows a new one as soon as it is written to again.
+	 */
+	public void release() {
+		if (pool != null && buffer != null) {
+			pool.release(bytes);
+			buffer = null;
+			bytes = null;
+			count = 0;
+		}
+	}
+
+	/**
+	 * Flushes this {@link FrameWriter} and closes the underlying {@link OutputStream}.
+	 *
+	 * @throws IOException if there is a problem with the {@link OutputStream}
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		out.close();
+	}
+
+}
@@ -0,0 +1,156 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Link;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link ChannelLink} is a {@link Link} that sends and receives through a {@link SocketChannel}. Unlike a
+ * {@link SocketLink}, it does not need the {@link java.net.Socket} behind the {@link SocketChannel}. Therefore it
+ * works with any kind of {@link SocketChannel}, in particular with a Unix domain socket channel (available since Java
+ * 16, see {@code java.net.UnixDomainSocketAddress}). Between two processes on the same host, a Unix domain socket
+ * bypasses the TCP stack which gives a lower latency and a higher throughput than a {@link java.net.Socket} over the
+ * loopback interface.<br>
+ * <br>
+ * The {@link SocketChannel} must be in blocking mode. {@link #getOutputChannel()} returns the {@link SocketChannel}
+ * itself, so {@link de.teiesti.postie.Parcel}s are transferred without copying them into the heap.
+ */
+public class ChannelLink implements Link {
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final SocketChannel channel;
+
+	private final InputStream in = new ChannelInputStream();
+	private final OutputStream out = new ChannelOutputStream();
+
+	/**
+	 * Creates a new {@link ChannelLink} that uses the given {@link SocketChannel}.
+	 *
+	 * @param channel the {@link SocketChannel}
+	 *
+	 * @throws IllegalArgumentException if {@code channel} is {@code null} or not in blocking mode
+	 */
+	public ChannelLink(SocketChannel channel) {
+		if (channel == null)
+			throw new IllegalArgumentException("channel == null");
+		if (!channel.isBlocking())
+			throw new IllegalArgumentException("channel is not in blocking mode");
+
+		this.channel = channel;
+	}
+
+	/**
+	 * Returns the {@link SocketChannel} this {@link ChannelLink} uses.
+	 *
+	 * @return the {@link SocketChannel}
+	 */
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return in;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return out;
+	}
+
+	@Override
+	public WritableByteChannel getOutputChannel() {
+		return channel;
+	}
+
+	@Override
+	public int getSendBufferSize() throws IOException {
+		return bufferSize(StandardSocketOptions.SO_SNDBUF);
+	}
+
+	@Override
+	public int getReceiveBufferSize() throws IOException {
+		return bufferSize(StandardSocketOptions.SO_RCVBUF);
+	}
+
+	private int bufferSize(SocketOption<Integer> option) throws IOException {
+		if (!channel.supportedOptions().contains(option))
+			return DEFAULT_BUFFER_SIZE;
+		return channel.getOption(option);
+	}
+
+	@Override
+	public void shutdownOutput() throws IOException {
+		channel.shutdownOutput();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return !channel.isOpen();
+	}
+
+	/*
+	 * java.nio.channels.Channels.newInputStream(...) and newOutputStream(...) lock the channel for any read or write
+	 * on some versions of Java. A Postman reads and writes from different threads at the same time, so the streams
+	 * access the channel directly.
+	 */
+
+	private class ChannelInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+
+			// a blocking channel returns at least one byte unless the end of the stream was reached
+			return channel.read(ByteBuffer.wrap(b, off, len));
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+	private class ChannelOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+}
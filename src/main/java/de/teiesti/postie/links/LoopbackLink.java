@@ -0,0 +1,270 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Link;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link LoopbackLink} is a {@link Link} between two {@link de.teiesti.postie.Postman}s within the same JVM. It
+ * passes data through {@link BlockingQueue}s instead of a network connection. Use {@link #pair()} or
+ * {@link #pair(boolean)} to create two connected {@link LoopbackLink}s and give one to each
+ * {@link de.teiesti.postie.Postman} with {@link de.teiesti.postie.Postman#use(Link)}.<br>
+ * <br>
+ * A {@link LoopbackLink} works in one of two modes:
+ * <ul>
+ *     <li>By default, it carries encoded bytes like any other {@link Link}. Anything the
+ *     {@link de.teiesti.postie.Postman} flushes is passed as one chunk.</li>
+ *     <li>If it carries letters (see {@link #carriesLetters()}), a {@link de.teiesti.postie.Postman} does not encode
+ *     the {@link de.teiesti.postie.Postman#send(Object) sent} letters at all but passes the objects themselves with
+ *     {@link #post(Object)}. The opposite side takes them with {@link #take()} and delivers the very same objects.
+ *     Therefore a letter must not be modified after it was sent. No {@link de.teiesti.postie.Serializer} is
+ *     needed.</li>
+ * </ul>
+ * Each direction holds at most {@value #CAPACITY} chunks or letters. If it is full, the sending side waits.
+ */
+public class LoopbackLink implements Link {
+
+	/**
+	 * The number of chunks or letters that may wait in each direction.
+	 */
+	public static final int CAPACITY = 1024;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Object END = new Object();
+
+	private final boolean carriesLetters;
+
+	private final BlockingQueue<Object> inbound = new LinkedBlockingQueue<>(CAPACITY);
+	private LoopbackLink opposite;
+
+	private final InputStream in = new QueueInputStream();
+	private final OutputStream out = new QueueOutputStream();
+
+	private volatile boolean outputShutdown = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates two connected {@link LoopbackLink}s that carry bytes.
+	 *
+	 * @return the two {@link LoopbackLink}s
+	 */
+	public static LoopbackLink[] pair() {
+		return pair(false);
+	}
+
+	/**
+	 * Creates two connected {@link LoopbackLink}s.
+	 *
+	 * @param carryLetters weather the {@link LoopbackLink}s should carry letters instead of bytes
+	 *
+	 * @return the two {@link LoopbackLink}s
+	 */
+	public static LoopbackLink[] pair(boolean carryLetters) {
+		LoopbackLink alice = new LoopbackLink(carryLetters);
+		LoopbackLink bob = new LoopbackLink(carryLetters);
+
+		alice.opposite = bob;
+		bob.opposite = alice;
+
+		return new LoopbackLink[] { alice, bob };
+	}
+
+	private LoopbackLink(boolean carriesLetters) {
+		this.carriesLetters = carriesLetters;
+	}
+
+	/**
+	 * Returns weather this {@link LoopbackLink} carries letters instead of bytes. A
+	 * {@link de.teiesti.postie.Postman} checks this to decide weather it uses {@link #post(Object)} and
+	 * {@link #take()} or the streams.
+	 *
+	 * @return if this {@link LoopbackLink} carries letters
+	 */
+	public boolean carriesLetters() {
+		return carriesLetters;
+	}
+
+	/**
+	 * Passes the given object to the opposite side. If the opposite side has {@value #CAPACITY} objects waiting,
+	 * this method blocks until it took one. Like writing to a {@link java.net.Socket}, this cannot be interrupted.
+	 * The interrupt status is kept.
+	 *
+	 * @param item the object
+	 *
+	 * @throws IOException if the output of this {@link LoopbackLink} was shut down or if the opposite side was closed
+	 * @throws IllegalArgumentException if {@code item} is {@code null}
+	 */
+	public void post(Object item) throws IOException {
+		if (item == null)
+			throw new IllegalArgumentException("item == null");
+		if (outputShutdown)
+			throw new IOException("output was shut down");
+
+		pass(item);
+	}
+
+	private void pass(Object item) throws IOException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				if (opposite.closed)
+					throw new IOException("opposite side closed the link");
+				try {
+					if (opposite.inbound.offer(item, 10, TimeUnit.MILLISECONDS))
+						return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Takes the next object the opposite side has passed with {@link #post(Object)}. If there is none, this method
+	 * blocks until one was passed.
+	 *
+	 * @return the object or {@code null} if the opposite side has shut down its output
+	 *
+	 * @throws IOException if this {@link LoopbackLink} was closed or if the waiting {@link Thread} was interrupted
+	 */
+	public Object take() throws IOException {
+		if (closed)
+			throw new IOException("link is closed");
+
+		try {
+			Object result = inbound.take();
+			if (result == END) {
+				// leave the end for any later call
+				inbound.offer(END);
+				return null;
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return in;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return out;
+	}
+
+	@Override
+	public WritableByteChannel getOutputChannel() {
+		return Channels.newChannel(out);
+	}
+
+	@Override
+	public int getSendBufferSize() {
+		return BUFFER_SIZE;
+	}
+
+	@Override
+	public int getReceiveBufferSize() {
+		return BUFFER_SIZE;
+	}
+
+	@Override
+	public void shutdownOutput() throws IOException {
+		if (outputShutdown) return;
+		outputShutdown = true;
+
+		pass(END);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			shutdownOutput();
+		} catch (IOException e) {
+			// the opposite side is already closed
+		}
+
+		// wake up a reader of this side
+		inbound.clear();
+		inbound.offer(END);
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	private class QueueOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			post(new byte[] { (byte) b });
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len > 0)
+				post(Arrays.copyOfRange(b, off, off + len));
+		}
+
+	}
+
+	private class QueueInputStream extends InputStream {
+
+		private byte[] chunk = new byte[0];
+		private int position = 0;
+		private boolean eof = false;
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+
+			while (position == chunk.length) {
+				if (eof) return -1;
+
+				Object next = take();
+				if (next == null) {
+					eof = true;
+				} else {
+					chunk = (byte[]) next;
+					position = 0;
+				}
+			}
+
+			int n = Math.min(len, chunk.length - position);
+			System.arraycopy(chunk, position, b, off, n);
+			position += n;
+
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return chunk.length - position;
+		}
+
+	}
+
+}
@@ -0,0 +1,361 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Link;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link MappedLink} is a {@link Link} between two {@link de.teiesti.postie.Postman}s on the same host that
+ * exchanges bytes through a memory-mapped file. The file contains two ring buffers, one for each direction. Sending
+ * copies the bytes into a ring buffer and publishes the new write position; the opposite side polls the write position
+ * and copies the bytes out. No system call is involved while a connection is busy. Therefore the latency is much lower
+ * than with a {@link java.net.Socket} over the loopback interface.<br>
+ * <br>
+ * One side creates the file with {@link #create(Path, int)}, the other side opens it with {@link #open(Path)}
+ * afterwards. Both sides may live in different processes. A waiting side spins for a short time before it backs off
+ * to {@link Thread#yield()} and finally parks for a few microseconds, so an idle {@link MappedLink} does not occupy a
+ * core.<br>
+ * <br>
+ * The file layout is: a header with a magic number and the ring capacity, followed by two rings. Each ring consists of
+ * the write position, the read position and the closing flags of both sides - each on its own cache line - and the
+ * data. Positions only grow; the index within the data is the position modulo the capacity.
+ */
+public class MappedLink implements Link {
+
+	private static final int MAGIC = 0x706f7374;	// "post"
+
+	private static final int CACHE_LINE = 64;
+	private static final int HEADER = CACHE_LINE;
+	private static final int RING_HEADER = 3 * CACHE_LINE;
+
+	private static final int WRITE_POSITION = 0;
+	private static final int READ_POSITION = CACHE_LINE;
+	private static final int WRITER_CLOSED = 2 * CACHE_LINE;
+	private static final int READER_CLOSED = 2 * CACHE_LINE + 4;
+
+	private static final int SPINS = 1000;
+	private static final int YIELDS = 100;
+	private static final long PARK_NANOS = 20000;
+
+	private final FileChannel file;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+
+	private final RingInputStream in;
+	private final RingOutputStream out;
+
+	private volatile boolean closed = false;
+
+	// see fence()
+	private volatile int fence;
+
+	/**
+	 * Creates a new file at the given {@link Path} with two rings of the given capacity and returns the
+	 * {@link MappedLink} of the creating side. An existing file is overwritten.
+	 *
+	 * @param file the {@link Path} of the file
+	 * @param capacity the number of bytes each ring can hold
+	 *
+	 * @return the {@link MappedLink}
+	 *
+	 * @throws IOException if the file cannot be created or mapped
+	 * @throws IllegalArgumentException if {@code file} is {@code null} or {@code capacity} is less than {@code 1}
+	 */
+	public static MappedLink create(Path file, int capacity) throws IOException {
+		if (file == null)
+			throw new IllegalArgumentException("file == null");
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity < 1");
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(capacity));
+
+		MappedLink result = new MappedLink(channel, buffer, capacity, 0);
+
+		// the magic number comes last: it shows the opposite side that the file is ready
+		buffer.putInt(4, capacity);
+		result.fence();
+		buffer.putInt(0, MAGIC);
+
+		return result;
+	}
+
+	/**
+	 * Opens a file that was created with {@link #create(Path, int)} and returns the {@link MappedLink} of the opening
+	 * side.
+	 *
+	 * @param file the {@link Path} of the file
+	 *
+	 * @return the {@link MappedLink}
+	 *
+	 * @throws IOException if the file cannot be opened or mapped or if it was not created yet
+	 * @throws IllegalArgumentException if {@code file} is {@code null}
+	 */
+	public static MappedLink open(Path file) throws IOException {
+		if (file == null)
+			throw new IllegalArgumentException("file == null");
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+		if (header.getInt(0) != MAGIC) {
+			channel.close();
+			throw new IOException("file was not created by a mapped link: " + file);
+		}
+
+		int capacity = header.getInt(4);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(capacity));
+
+		return new MappedLink(channel, buffer, capacity, 1);
+	}
+
+	private static long size(int capacity) {
+		return HEADER + 2L * (RING_HEADER + capacity);
+	}
+
+	private MappedLink(FileChannel file, MappedByteBuffer buffer, int capacity, int side) {
+		this.file = file;
+		this.buffer = buffer;
+		this.capacity = capacity;
+
+		int first = HEADER;
+		int second = HEADER + RING_HEADER + capacity;
+
+		out = new RingOutputStream(side == 0 ? first : second);
+		in = new RingInputStream(side == 0 ? second : first);
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return in;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return out;
+	}
+
+	@Override
+	public WritableByteChannel getOutputChannel() {
+		return Channels.newChannel(out);
+	}
+
+	/**
+	 * Returns the capacity of a ring.
+	 *
+	 * @return the send buffer size
+	 */
+	@Override
+	public int getSendBufferSize() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the capacity of a ring.
+	 *
+	 * @return the receive buffer size
+	 */
+	@Override
+	public int getReceiveBufferSize() {
+		return capacity;
+	}
+
+	@Override
+	public void shutdownOutput() {
+		out.close();
+	}
+
+	/**
+	 * Closes this {@link MappedLink} in both directions and closes the file. The file is not deleted.
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		out.close();
+		in.close();
+		file.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Java 7 offers no ordered access to a {@link MappedByteBuffer}. This method reads and writes a volatile field.
+	 * No memory access before this method can be moved behind it and vice versa. Publishing a position after the
+	 * data and reading the data after the position is therefore safe.
+	 */
+	private void fence() {
+		fence++;
+	}
+
+	private static void backOff(int round) {
+		if (round < SPINS)
+			return;
+		if (round < SPINS + YIELDS)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(PARK_NANOS);
+	}
+
+	private class RingOutputStream extends OutputStream {
+
+		private final int ring;
+		private final int data;
+		private final ByteBuffer view = buffer.duplicate();
+
+		private long writePosition;
+		private boolean closed = false;
+
+		public RingOutputStream(int ring) {
+			this.ring = ring;
+			this.data = ring + RING_HEADER;
+			this.writePosition = buffer.getLong(ring + WRITE_POSITION);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (closed)
+				throw new IOException("output was shut down");
+
+			while (len > 0) {
+				int free = awaitFree();
+
+				int index = (int) (writePosition % capacity);
+				int n = Math.min(Math.min(len, free), capacity - index);
+				view.position(data + index);
+				view.put(b, off, n);
+
+				// publish the data after it was written
+				writePosition += n;
+				fence();
+				buffer.putLong(ring + WRITE_POSITION, writePosition);
+
+				off += n;
+				len -= n;
+			}
+		}
+
+		private int awaitFree() throws IOException {
+			for (int round = 0; ; round++) {
+				if (buffer.getInt(ring + READER_CLOSED) != 0)
+					throw new EOFException("opposite side closed the link");
+
+				long readPosition = buffer.getLong(ring + READ_POSITION);
+				fence();
+				int free = (int) (capacity - (writePosition - readPosition));
+				if (free > 0)
+					return free;
+
+				backOff(round);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (closed) return;
+			closed = true;
+
+			fence();
+			buffer.putInt(ring + WRITER_CLOSED, 1);
+		}
+
+	}
+
+	private class RingInputStream extends InputStream {
+
+		private final int ring;
+		private final int data;
+		private final ByteBuffer view = buffer.duplicate();
+
+		private long readPosition;
+		private boolean closed = false;
+
+		public RingInputStream(int ring) {
+			this.ring = ring;
+			this.data = ring + RING_HEADER;
+			this.readPosition = buffer.getLong(ring + READ_POSITION);
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (closed)
+				throw new IOException("link is closed");
+			if (len == 0)
+				return 0;
+
+			int available = awaitAvailable();
+			if (available == 0)
+				return -1;
+
+			int index = (int) (readPosition % capacity);
+			int n = Math.min(Math.min(len, available), capacity - index);
+			view.position(data + index);
+			view.get(b, off, n);
+
+			// release the space after the data was read
+			readPosition += n;
+			fence();
+			buffer.putLong(ring + READ_POSITION, readPosition);
+
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return (int) (buffer.getLong(ring + WRITE_POSITION) - readPosition);
+		}
+
+		private int awaitAvailable() throws IOException {
+			for (int round = 0; ; round++) {
+				// the flag must be read before the position: otherwise data written in between would be lost
+				boolean writerClosed = buffer.getInt(ring + WRITER_CLOSED) != 0;
+				int available = (int) (buffer.getLong(ring + WRITE_POSITION) - readPosition);
+				fence();
+
+				if (available > 0 || writerClosed)
+					return available;
+				if (closed)
+					throw new IOException("link is closed");
+
+				backOff(round);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (closed) return;
+			closed = true;
+
+			fence();
+			buffer.putInt(ring + READER_CLOSED, 1);
+		}
+
+	}
+
+}
@@ -0,0 +1,56 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Connector;
+import de.teiesti.postie.Link;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A {@link SocketConnector} is a {@link Connector} that connects a new {@link Socket} to a given host and port each
+ * time it is asked for a connection.
+ */
+public class SocketConnector implements Connector {
+
+	private final String host;
+	private final int port;
+	private final int timeout;
+
+	/**
+	 * Creates a new {@link SocketConnector} that connects to the given host and port.
+	 *
+	 * @param host the host name or address
+	 * @param port the port
+	 * @param timeout the maximal time to wait for a connection in milliseconds or {@code 0} to wait as long as the
+	 *                operating system does
+	 *
+	 * @throws IllegalArgumentException if {@code host} is {@code null}, {@code port} is out of range or
+	 * {@code timeout} is negative
+	 */
+	public SocketConnector(String host, int port, int timeout) {
+		if (host == null)
+			throw new IllegalArgumentException("host == null");
+		if (port < 0 || port > 0xFFFF)
+			throw new IllegalArgumentException("port < 0 || port > 0xFFFF");
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout < 0");
+
+		this.host = host;
+		this.port = port;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public Link connect() throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), timeout);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+		return new SocketLink(socket);
+	}
+
+}
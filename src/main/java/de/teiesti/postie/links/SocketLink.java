@@ -0,0 +1,86 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Link;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link SocketLink} is a {@link Link} that sends and receives through a {@link Socket}. If the {@link Socket} was
+ * created by a {@link java.nio.channels.SocketChannel}, {@link #getOutputChannel()} returns that channel. This allows
+ * the operating system to transfer {@link de.teiesti.postie.Parcel}s without copying them into the heap.
+ */
+public class SocketLink implements Link {
+
+	private final Socket socket;
+
+	/**
+	 * Creates a new {@link SocketLink} that uses the given {@link Socket}.
+	 *
+	 * @param socket the {@link Socket}
+	 *
+	 * @throws IllegalArgumentException if {@code socket} is {@code null}
+	 */
+	public SocketLink(Socket socket) {
+		if (socket == null)
+			throw new IllegalArgumentException("socket == null");
+
+		this.socket = socket;
+	}
+
+	/**
+	 * Returns the {@link Socket} this {@link SocketLink} uses.
+	 *
+	 * @return the {@link Socket}
+	 */
+	public Socket getSocket() {
+		return socket;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return socket.getInputStream();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return socket.getOutputStream();
+	}
+
+	@Override
+	public WritableByteChannel getOutputChannel() throws IOException {
+		if (socket.getChannel() != null)
+			return socket.getChannel();
+		return Channels.newChannel(socket.getOutputStream());
+	}
+
+	@Override
+	public int getSendBufferSize() throws IOException {
+		return socket.getSendBufferSize();
+	}
+
+	@Override
+	public int getReceiveBufferSize() throws IOException {
+		return socket.getReceiveBufferSize();
+	}
+
+	@Override
+	public void shutdownOutput() throws IOException {
+		socket.shutdownOutput();
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+
+}
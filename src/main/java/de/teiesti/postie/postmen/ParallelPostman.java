@@ -5,6 +5,7 @@ import de.teiesti.postie.Recipient;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Phaser;
 
 /**
@@ -13,7 +14,13 @@ import java.util.concurrent.Phaser;
  * is created and submitted to the {@link ExecutorService}. By default, this {@link ParallelPostman} observes the
  * {@link Letter} order: Before the next {@link Letter} is processed a {@link ParallelPostman} waits until any
  * {@link Recipient#accept} has return. This behaviour can be disabled with {@link #observeLetterOrder}. It is
- * possible to specify the {@link ExecutorService} with {@link #setExecutorService(ExecutorService)}.
+ * possible to specify the {@link ExecutorService} with {@link #setExecutorService(ExecutorService)}.<br>
+ * <br>
+ * The default {@link ExecutorService} spawns a new {@link Thread} whenever all others are busy, which is plenty of
+ * {@link Thread}s during a burst of {@link Letter}s. Many {@link ParallelPostman}s, e.g. those an
+ * {@link de.teiesti.postie.Office} spawns, should rather share a pool with a bounded number of {@link Thread}s (see
+ * {@link #newDeliveryPool(int)}). A clone shares the {@link ExecutorService} of its original, so it is sufficient to
+ * give the pool to the blueprint of an {@link de.teiesti.postie.Office}.
  *
  * @param <Letter> type of the letters
  */
@@ -62,6 +69,44 @@ public class ParallelPostman<Letter> extends Postman<Letter> {
 		return this;
 	}
 
+	/**
+	 * Creates an {@link ExecutorService} that is meant to be shared by many {@link ParallelPostman}s (see
+	 * {@link #setExecutorService(ExecutorService)}). It is a {@link ForkJoinPool} in async mode: Each of its
+	 * {@link Thread}s takes the small delivery jobs from a queue of its own in the order they were submitted and
+	 * steals from the others if it has nothing to do. The number of {@link Thread}s does not exceed the given
+	 * parallelism, however many {@link Letter}s arrive at once. Therefore a {@link Recipient} should not block for a
+	 * long time: it keeps a {@link Thread} from delivering to all other {@link Recipient}s.
+	 *
+	 * @param parallelism the maximal number of {@link Letter}s that are delivered at the same time, e.g. the number of
+	 * available processors
+	 *
+	 * @return the {@link ExecutorService}
+	 *
+	 * @throws IllegalArgumentException if {@code parallelism} is less than {@code 1}
+	 */
+	public static ExecutorService newDeliveryPool(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism < 1");
+
+		return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	}
+
+	/**
+	 * Creates a clone of this {@link ParallelPostman} (see {@link Postman#clone()}). The clone shares the
+	 * {@link ExecutorService} but awaits its own {@link Letter}s only.
+	 *
+	 * @throws CloneNotSupportedException not thrown
+	 */
+	@Override
+	public Postman clone() throws CloneNotSupportedException {
+		ParallelPostman result = (ParallelPostman) super.clone();
+
+		// a shared phaser would make a clone wait for the deliveries of all others
+		result.phaser = new Phaser(1);
+
+		return result;
+	}
+
 	/**
 	 * Delivers a given {@link Letter} in parallel using an {@link ExecutorService}. This method creates a {@link
 	 * Runnable} for each {@link Recipient} and submits it to the {@link ExecutorService}. If this {@link
@@ -76,7 +121,7 @@ public class ParallelPostman<Letter> extends Postman<Letter> {
     protected Postman<Letter> deliver(Letter letter) {
 		if(observeLetterOrder) phaser.arriveAndAwaitAdvance();
 
-        for (Recipient<Letter> r : recipients) {
+        for (Recipient<Letter> r : recipientsOf(letter)) {
 			phaser.register();
 			es.submit(new Deliverer(r, letter, this));
 		}
@@ -128,6 +173,30 @@ public class ParallelPostman<Letter> extends Postman<Letter> {
 		return this;
     }
 
+	/**
+	 * Reports parallel to any {@link Recipient} that the connection failed because of the given error. This method
+	 * creates a {@link Runnable} for each {@link Recipient} and submits it to the {@link ExecutorService}. Before it
+	 * waits until any {@link Letter} was processed for any {@link Recipient}. This method does not return before the
+	 * last {@link Recipient#noticeError(Throwable, Postman)} has returned.
+	 *
+	 * @param error the error that made the connection fail
+	 *
+	 * @return this {@link Postman}
+	 */
+	@Override
+	protected Postman<Letter> reportError(Throwable error) {
+		phaser.arriveAndAwaitAdvance();
+
+		for (Recipient<Letter> r : recipients) {
+			phaser.register();
+			es.submit(new ErrorReporter(r, error, this));
+		}
+
+		phaser.arriveAndAwaitAdvance();
+
+		return this;
+	}
+
     private class Deliverer implements Runnable {
 
         private Recipient<Letter> recipient;
@@ -142,8 +211,15 @@ public class ParallelPostman<Letter> extends Postman<Letter> {
 
         @Override
         public void run() {
-			recipient.accept(letter, postman);
-            phaser.arriveAndDeregister();
+			try {
+				recipient.accept(letter, postman);
+			} catch (RuntimeException e) {
+				// the connection fails as if the receiving thread had called the recipient
+				fail(e);
+			} finally {
+				// the party must arrive in any case, otherwise the next barrier waits forever
+				phaser.arriveAndDeregister();
+			}
         }
 
     }
@@ -160,8 +236,13 @@ public class ParallelPostman<Letter> extends Postman<Letter> {
 
 		@Override
 		public void run() {
-			recipient.noticeStart(postman);
-			phaser.arriveAndDeregister();
+			try {
+				recipient.noticeStart(postman);
+			} catch (RuntimeException e) {
+				fail(e);
+			} finally {
+				phaser.arriveAndDeregister();
+			}
 		}
 
 	}
@@ -178,8 +259,38 @@ public class ParallelPostman<Letter> extends Postman<Letter> {
 
 		@Override
 		public void run() {
-			recipient.noticeStop(postman);
-			phaser.arriveAndDeregister();
+			try {
+				recipient.noticeStop(postman);
+			} catch (RuntimeException e) {
+				fail(e);
+			} finally {
+				phaser.arriveAndDeregister();
+			}
+		}
+
+	}
+
+	private class ErrorReporter implements Runnable {
+
+		private Recipient<Letter> recipient;
+		private Throwable error;
+		private Postman postman;
+
+		public ErrorReporter(Recipient<Letter> recipient, Throwable error, Postman postman) {
+			this.recipient = recipient;
+			this.error = error;
+			this.postman = postman;
+		}
+
+		@Override
+		public void run() {
+			try {
+				recipient.noticeError(error, postman);
+			} catch (RuntimeException e) {
+				fail(e);
+			} finally {
+				phaser.arriveAndDeregister();
+			}
 		}
 
 	}
@@ -0,0 +1,398 @@
+package de.teiesti.postie.postmen;
+
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.Recipient;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link RingPostman} is a {@link Postman} that hands received {@link Letter}s over to its {@link Recipient}s
+ * through a ring buffer. The {@link Thread} that receives the {@link Letter}s publishes each {@link Letter} into the
+ * next slot of the ring. Each {@link Recipient} has a {@link Thread} of its own that follows the published
+ * {@link Letter}s with a cursor of its own. It takes all {@link Letter}s that were published since it looked last in
+ * a single batch. Unlike a {@link ParallelPostman}, a {@link RingPostman} does not create any object per
+ * {@link Letter}: the ring is allocated once per connection and its slots are reused.<br>
+ * <br>
+ * Each {@link Recipient} gets the {@link Letter}s in the order they were received, but independently of the others: a
+ * slow {@link Recipient} does not hold up a fast one as long as the ring has room. If the slowest {@link Recipient} is
+ * as many {@link Letter}s behind as the ring has slots, receiving waits until it caught up. The capacity of the ring
+ * can be changed with {@link #capacity(int)}.<br>
+ * <br>
+ * {@link Recipient#noticeStart(Postman)}, {@link Recipient#noticeStop(Postman)} and
+ * {@link Recipient#noticeError(Throwable, Postman)} are called by the {@link Thread} that receives the {@link Letter}s,
+ * like a {@link SequentialPostman} does. Before the stop or an error is reported, every {@link Recipient} has taken all
+ * {@link Letter}s that were published. A {@link Recipient} that throws while it takes a {@link Letter} or is told
+ * about the start, the stop or an error makes the connection fail, like it does on the receiving {@link Thread}.
+ *
+ * @param <Letter> type of the letters
+ */
+public class RingPostman<Letter> extends Postman<Letter> {
+
+	/**
+	 * The default number of slots of a ring.
+	 */
+	public static final int CAPACITY = 1024;
+
+	// the number of times a consumer looks for new letters before it waits for a signal
+	private static final int SPINS = 64;
+
+	private int capacity = CAPACITY;
+
+	private Object[] ring;
+	// per slot: the recipients the letter is routed to (see recipientsOf(...))
+	private Object[] addressees;
+	private int mask;
+	// the number of letters that were published, which is the sequence of the next one
+	private volatile long published;
+	// the lowest cursor of all consumers the last time it was looked at, used by the receiving thread only
+	private long gate;
+
+	private ReentrantLock lock = new ReentrantLock();
+	// signaled if a letter was published or a cursor moved, while anybody is waiting
+	private Condition advanced = lock.newCondition();
+	private volatile int waiting = 0;
+
+	// replaced as a whole if a recipient is registered or unregistered, null if no letters are delivered
+	private volatile Consumer[] consumers;
+
+	/**
+	 * Sets the number of slots of the ring. It applies to connections that are established afterwards. The default is
+	 * {@value #CAPACITY}.
+	 *
+	 * @param capacity the number of slots, a power of two
+	 *
+	 * @return this {@link Postman}
+	 *
+	 * @throws IllegalArgumentException if {@code capacity} is not a positive power of two
+	 */
+	public Postman<Letter> capacity(int capacity) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("capacity is not a positive power of two");
+
+		this.capacity = capacity;
+
+		return this;
+	}
+
+	/**
+	 * Creates a clone of this {@link RingPostman} (see {@link Postman#clone()}). The clone has a ring of its own.
+	 *
+	 * @throws CloneNotSupportedException not thrown
+	 */
+	@Override
+	public Postman clone() throws CloneNotSupportedException {
+		@SuppressWarnings("unchecked")
+		RingPostman<Letter> result = (RingPostman<Letter>) super.clone();
+
+		result.ring = null;
+		result.addressees = null;
+		result.consumers = null;
+		result.lock = new ReentrantLock();
+		result.advanced = result.lock.newCondition();
+		result.waiting = 0;
+
+		return result;
+	}
+
+	/**
+	 * Publishes the given {@link Letter} into the next slot of the ring. If the ring is full, this method waits until
+	 * the slowest {@link Recipient} has taken the oldest {@link Letter}.
+	 *
+	 * @param letter the {@link Letter} to deliver
+	 *
+	 * @return this {@link Postman}
+	 */
+	@Override
+	protected Postman<Letter> deliver(Letter letter) {
+		long sequence = published;
+
+		// the slot is free if the slowest consumer has taken the letter that was published one round before
+		if (sequence - gate >= ring.length) {
+			gate = lowestCursor(sequence);
+			if (sequence - gate >= ring.length) {
+				lock.lock();
+				try {
+					waiting++;
+					while (sequence - (gate = lowestCursor(sequence)) >= ring.length)
+						advanced.awaitUninterruptibly();
+				} finally {
+					waiting--;
+					lock.unlock();
+				}
+			}
+		}
+
+		ring[(int) sequence & mask] = letter;
+		addressees[(int) sequence & mask] = recipientsOf(letter);
+		published = sequence + 1;
+		signal();
+
+		return this;
+	}
+
+	private long lowestCursor(long sequence) {
+		long result = sequence;
+		for (Consumer c : consumers)
+			result = Math.min(result, c.cursor);
+		return result;
+	}
+
+	private void signal() {
+		if (waiting > 0) {
+			lock.lock();
+			try {
+				advanced.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Reports to any {@link Recipient} that a connection was established and the {@link Postman} starts delivering
+	 * {@link Letter}s now. Afterwards this method allocates the ring and starts a {@link Thread} for each
+	 * {@link Recipient}.
+	 *
+	 * @return this {@link Postman}
+	 */
+	@Override
+	protected Postman<Letter> reportStart() {
+		for (Recipient<Letter> r : recipients) {
+			try {
+				r.noticeStart(this);
+			} catch (RuntimeException e) {
+				// the connection fails, but the ring is set up anyway: the receiving thread still reports the stop
+				fail(e);
+			}
+		}
+
+		ring = new Object[capacity];
+		addressees = new Object[capacity];
+		mask = capacity - 1;
+		published = 0;
+		gate = 0;
+
+		lock.lock();
+		try {
+			consumers = consumers(0);
+		} finally {
+			lock.unlock();
+		}
+		follow();
+
+		return this;
+	}
+
+	/**
+	 * Starts a {@link Thread} for a {@link Recipient} that was registered and stops the one of a {@link Recipient}
+	 * that was unregistered, if this {@link RingPostman} is delivering.
+	 */
+	@Override
+	protected void recipientsChanged() {
+		follow();
+	}
+
+	// starts and stops the consumers to match the registered recipients
+	private void follow() {
+		lock.lock();
+		try {
+			if (consumers == null)
+				return;
+
+			// by recipient: the consumers that are not taken over yet
+			Map<Recipient<Letter>, Consumer> current = new IdentityHashMap<>();
+			for (Consumer c : consumers)
+				current.put(c.recipient, c);
+
+			Consumer[] next = consumers(recipients.size());
+			int n = 0;
+			for (Recipient<Letter> r : recipients) {
+				Consumer consumer = current.remove(r);
+				if (consumer == null) {
+					// a new recipient gets the letters that are published from now on
+					consumer = new Consumer(r, published);
+					consumer.start();
+				}
+				if (n == next.length) next = Arrays.copyOf(next, n + 1);
+				next[n++] = consumer;
+			}
+			next = Arrays.copyOf(next, n);
+
+			for (Consumer c : current.values())
+				c.stopped = true;
+
+			consumers = next;
+			advanced.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Consumer[] consumers(int length) {
+		return (Consumer[]) new RingPostman.Consumer[length];
+	}
+
+	/**
+	 * Waits until every {@link Recipient} has taken all published {@link Letter}s and reports that the last
+	 * {@link Letter} was delivered and the connection will close.
+	 *
+	 * @return this {@link Postman}
+	 */
+	@Override
+	protected Postman<Letter> reportStop() {
+		drain();
+
+		// the consumers are not needed any more
+		Consumer[] current;
+		lock.lock();
+		try {
+			current = consumers;
+			consumers = null;
+			for (Consumer c : current)
+				c.stopped = true;
+			advanced.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		boolean interrupted = false;
+		for (Consumer c : current) {
+			while (c.isAlive()) {
+				try {
+					c.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+
+		// the letters must not outlive the connection
+		ring = null;
+		addressees = null;
+
+		for (Recipient<Letter> r : recipients) {
+			try {
+				r.noticeStop(this);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Waits until every {@link Recipient} has taken all published {@link Letter}s and reports that the connection
+	 * failed because of the given error.
+	 *
+	 * @param error the error that made the connection fail
+	 *
+	 * @return this {@link Postman}
+	 */
+	@Override
+	protected Postman<Letter> reportError(Throwable error) {
+		drain();
+
+		for (Recipient<Letter> r : recipients) {
+			try {
+				r.noticeError(error, this);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+
+		return this;
+	}
+
+	private void drain() {
+		follow();
+
+		lock.lock();
+		try {
+			waiting++;
+			while (consumers != null && lowestCursor(published) < published)
+				advanced.awaitUninterruptibly();
+		} finally {
+			waiting--;
+			lock.unlock();
+		}
+	}
+
+	private class Consumer extends Thread {
+
+		private final Recipient<Letter> recipient;
+		// the sequence of the next letter to take, written by this thread only
+		private volatile long cursor;
+		private volatile boolean stopped = false;
+
+		private Consumer(Recipient<Letter> recipient, long cursor) {
+			this.recipient = recipient;
+			this.cursor = cursor;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void run() {
+			Object[] ring = RingPostman.this.ring;
+			Object[] addressees = RingPostman.this.addressees;
+			int mask = ring.length - 1;
+
+			while (true) {
+				long available = await();
+				if (available == -1)
+					return;
+
+				// a batch: everything that was published since the last look
+				for (long sequence = cursor; sequence < available && !stopped; sequence++) {
+					// a letter that is routed elsewhere is skipped, all recipients get it without a router
+					int slot = (int) sequence & mask;
+					Set<?> to = (Set<?>) addressees[slot];
+					if (to != recipients && !to.contains(recipient))
+						continue;
+
+					try {
+						recipient.accept((Letter) ring[slot], RingPostman.this);
+					} catch (RuntimeException e) {
+						// the connection fails, but this consumer keeps following the ring until it is drained
+						fail(e);
+					}
+				}
+				cursor = available;
+				signal();
+			}
+		}
+
+		// returns the number of published letters as soon as it exceeds the cursor or -1 if this consumer stopped
+		private long await() {
+			for (int i = 0; i < SPINS; i++) {
+				if (stopped) return -1;
+				long available = published;
+				if (available > cursor) return available;
+				Thread.yield();
+			}
+
+			lock.lock();
+			try {
+				waiting++;
+				while (true) {
+					if (stopped) return -1;
+					long available = published;
+					if (available > cursor) return available;
+					advanced.awaitUninterruptibly();
+				}
+			} finally {
+				waiting--;
+				lock.unlock();
+			}
+		}
+
+	}
+
+}
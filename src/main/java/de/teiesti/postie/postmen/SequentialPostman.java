@@ -9,7 +9,8 @@ import de.teiesti.postie.Recipient;
  * {@link Thread} that receives the {@link Letter}s from the {@link java.net.Socket}. Therefore no
  * {@link Recipient#accept(Object, Postman)} should block for long because it blocks all the other {@link Recipient}s
  * and {@link Letter}s. A {@link SequentialPostman} guarantees that the {@link Letter}s are delivered in the order
- * they have been received.
+ * they have been received. A {@link Recipient} that throws makes the connection fail. The other {@link Recipient}s
+ * are still told about the start, the stop or an error.
  *
  * @param <Letter> type of the letters
  */
@@ -24,7 +25,7 @@ public class SequentialPostman<Letter> extends Postman<Letter> {
 	 */
     @Override
     protected Postman<Letter> deliver(Letter letter) {
-        for (Recipient<Letter> r : recipients) {
+        for (Recipient<Letter> r : recipientsOf(letter)) {
 			r.accept(letter, this);
 		}
 
@@ -40,7 +41,12 @@ public class SequentialPostman<Letter> extends Postman<Letter> {
 	@Override
 	protected Postman reportStart() {
 		for (Recipient<Letter> r : recipients) {
-			r.noticeStart(this);
+			try {
+				r.noticeStart(this);
+			} catch (RuntimeException e) {
+				// the connection fails, but any other recipient still learns about the start
+				fail(e);
+			}
 		}
 
 		return this;
@@ -54,8 +60,34 @@ public class SequentialPostman<Letter> extends Postman<Letter> {
 	 */
 	@Override
 	protected Postman reportStop() {
-		for (Recipient<Letter> r : recipients)
-			r.noticeStop(this);
+		for (Recipient<Letter> r : recipients) {
+			try {
+				r.noticeStop(this);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Reports to any {@link Recipient} that the connection failed because of the given error. This method does not
+	 * start a new {@link Thread}.
+	 *
+	 * @param error the error that made the connection fail
+	 *
+	 * @return this {@link Postman}
+	 */
+	@Override
+	protected Postman reportError(Throwable error) {
+		for (Recipient<Letter> r : recipients) {
+			try {
+				r.noticeError(error, this);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
 
 		return this;
 	}
@@ -0,0 +1,19 @@
+package de.teiesti.postie.recipients;
+
+/**
+ * A {@link Filter} decides weather a {@link Letter} is of interest. Any implementation should be thread-safe and
+ * should not have side effects because it may be asked more than once for the same {@link Letter}.
+ *
+ * @param <Letter> type of the letters
+ */
+public interface Filter<Letter> {
+
+	/**
+	 * Returns weather the given {@link Letter} passes this {@link Filter}.
+	 *
+	 * @param letter the {@link Letter}
+	 * @return if the {@link Letter} is of interest
+	 */
+	public boolean matches(Letter letter);
+
+}
@@ -3,30 +3,65 @@ package de.teiesti.postie.recipients;
 import de.teiesti.postie.Postman;
 import de.teiesti.postie.Recipient;
 
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link Mailbox} is a {@link Recipient} that stores accepted {@link Letter}s until they where received. To use a
  * {@link Mailbox} register it to one or more {@link Postman} with {@link Postman#register(Recipient)}. A {@link
  * Postman} will put any received {@link Letter} into this {@link Mailbox} using {@link #accept(Object,
- * Postman)}. You can receive accepted letters with {@link #receive()}.
+ * Postman)}. You can receive accepted letters with {@link #receive()}.<br>
+ * <br>
+ * By default, a {@link Mailbox} can store an unlimited number of {@link Letter}s. If a {@link Mailbox} is created
+ * with a capacity (see {@link #Mailbox(int)}), it stores the {@link Letter}s in an array that is allocated once. If
+ * such a {@link Mailbox} is full, {@link #accept(Object, Postman)} blocks until a {@link Letter} was received. This
+ * slows down the delivering {@link Postman} and - through the network connection - the opposite side.
 
  * @param <Letter> type of the letters
  */
 public class Mailbox<Letter> extends SimpleRecipient<Letter> {
 
-    private final BlockingQueue<Letter> inbox = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Letter> inbox;
+
+	/**
+	 * Creates a new {@link Mailbox} that can store an unlimited number of {@link Letter}s.
+	 */
+	public Mailbox() {
+		inbox = new LinkedBlockingQueue<>();
+	}
+
+	/**
+	 * Creates a new {@link Mailbox} that can store at most {@code capacity} {@link Letter}s at once.
+	 *
+	 * @param capacity the maximal number of {@link Letter}s this {@link Mailbox} can store
+	 *
+	 * @throws IllegalArgumentException if {@code capacity} is less than {@code 1}
+	 */
+	public Mailbox(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity < 1");
+
+		inbox = new ArrayBlockingQueue<>(capacity);
+	}
 
 	/**
 	 * Accepts {@link Letter}s and stores it in this {@link Mailbox} until they where received with {@link #receive()}.
+	 * If this {@link Mailbox} is full, this method blocks until a {@link Letter} was received. If the blocking
+	 * {@link Thread} is interrupted, the given {@link Letter} is dropped and the interrupt status is kept.
 	 *
 	 * @param letter the {@link Letter}
 	 * @param postman the {@link Postman} that delivered the {@link Letter} - not used
 	 */
 	@Override
 	public void accept(Letter letter, Postman postman) {
-       inbox.add(letter);
+		try {
+			inbox.put(letter);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
     }
 
 	/**
@@ -45,6 +80,51 @@ public class Mailbox<Letter> extends SimpleRecipient<Letter> {
         return inbox.take();
     }
 
+	/**
+	 * Returns a {@link Letter} like {@link #receive()} does but waits at most the given time. If no {@link Letter}
+	 * was accepted in time, this method returns {@code null}.
+	 *
+	 * @param timeout how long to wait before giving up, in units of {@code unit}
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return the {@link Letter} or {@code null} if the time elapsed
+	 *
+	 * @throws InterruptedException if a waiting {@link Thread} was interrupted
+	 */
+	public Letter receive(long timeout, TimeUnit unit) throws InterruptedException {
+		return inbox.poll(timeout, unit);
+	}
+
+	/**
+	 * Returns a {@link Letter} like {@link #receive()} does but never blocks. If this {@link Mailbox} does not store
+	 * a {@link Letter}, this method returns {@code null}.
+	 *
+	 * @return the {@link Letter} or {@code null} if this {@link Mailbox} is empty
+	 */
+	public Letter poll() {
+		return inbox.poll();
+	}
+
+	/**
+	 * Removes at most the given number of {@link Letter}s from this {@link Mailbox} and adds them to the given
+	 * {@link Collection}. The {@link Letter}s are added in the order {@link #receive()} would have returned them.
+	 * This method never blocks. It is faster than calling {@link #poll()} repeatedly because it locks this
+	 * {@link Mailbox} only once.
+	 *
+	 * @param letters the {@link Collection} to add the {@link Letter}s to
+	 * @param maxLetters the maximal number of {@link Letter}s to remove
+	 *
+	 * @return the number of {@link Letter}s that were added
+	 *
+	 * @throws IllegalArgumentException if {@code letters} is {@code null}
+	 */
+	public int drainTo(Collection<? super Letter> letters, int maxLetters) {
+		if (letters == null)
+			throw new IllegalArgumentException("letters == null");
+
+		return inbox.drainTo(letters, maxLetters);
+	}
+
 	/**
 	 * Returns if this {@link Mailbox} has a {@link Letter} at the moment. This method returns {@code true} if and
 	 * only if {@link #receive()} does not block. But please do not rely on this guarantee in a multi-threaded
@@ -0,0 +1,387 @@
+package de.teiesti.postie.recipients;
+
+import de.teiesti.postie.Classifier;
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.Recipient;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link SelectiveMailbox} is a {@link Recipient} that stores accepted {@link Letter}s until they where received.
+ * In contrast to a {@link Mailbox}, a receiver does not have to take the {@link Letter}s in the order they were
+ * accepted. Instead, it can ask for the next {@link Letter} of a certain class or for the next {@link Letter} that
+ * passes a {@link Filter}. This allows several {@link Thread}s to share one {@link SelectiveMailbox} where each
+ * {@link Thread} handles other {@link Letter}s.<br>
+ * <br>
+ * A {@link SelectiveMailbox} uses a {@link Classifier} to sort the accepted {@link Letter}s into one queue per key.
+ * {@link #receive(Object)} waits only for {@link Letter}s with the given key and takes them from the head of their
+ * queue without looking at any other {@link Letter}. {@link #receive(Filter)} must look at the stored {@link Letter}s
+ * but removes only the one it returns. While it waits, the {@link Filter} is only asked for {@link Letter}s that
+ * arrived in the meantime.<br>
+ * <br>
+ * Within each key, and for {@link #receive()} and {@link #receive(Filter)} across all keys, a
+ * {@link SelectiveMailbox} works according to the FIFO principle.<br>
+ * <br>
+ * A queue exists only as long as it holds a {@link Letter} or a {@link Thread} waits for its key. Thus keys with a
+ * high cardinality, e.g. correlation ids, do not pile up.
+ *
+ * @param <Letter> type of the letters
+ * @param <Key> type of the keys the {@link Classifier} assigns
+ */
+public class SelectiveMailbox<Letter, Key> extends SimpleRecipient<Letter> {
+
+	private final Classifier<? super Letter, ? extends Key> classifier;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition arrived = lock.newCondition();
+	private final Map<Key, Slot> slots = new HashMap<>();
+
+	private long accepted = 0;
+	private int stored = 0;
+
+	/**
+	 * Creates a new {@link SelectiveMailbox} that sorts the accepted {@link Letter}s with the given
+	 * {@link Classifier}.
+	 *
+	 * @param classifier the {@link Classifier} that assigns a key to any accepted {@link Letter}
+	 *
+	 * @throws IllegalArgumentException if {@code classifier} is {@code null}
+	 */
+	public SelectiveMailbox(Classifier<? super Letter, ? extends Key> classifier) {
+		if (classifier == null)
+			throw new IllegalArgumentException("classifier == null");
+
+		this.classifier = classifier;
+	}
+
+	/**
+	 * Accepts {@link Letter}s and stores it in this {@link SelectiveMailbox} until they where received. Any
+	 * {@link Letter} is sorted into the queue that belongs to its key.
+	 *
+	 * @param letter the {@link Letter}
+	 * @param postman the {@link Postman} that delivered the {@link Letter} - not used
+	 */
+	@Override
+	public void accept(Letter letter, Postman postman) {
+		Key key = classifier.classify(letter);
+
+		lock.lock();
+		try {
+			Slot slot = slot(key);
+			slot.letters.add(new Entry<>(accepted++, letter));
+			stored++;
+
+			slot.arrived.signal();
+			arrived.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the {@link Letter} that was accepted the longest time ago. If this {@link SelectiveMailbox} does not
+	 * store a {@link Letter} when this method is called, it will block until a {@link Letter} was accepted or the
+	 * blocking {@link Thread} was interrupted.
+	 *
+	 * @return the {@link Letter}
+	 *
+	 * @throws InterruptedException if a waiting {@link Thread} was interrupted
+	 */
+	public Letter receive() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (stored == 0)
+				arrived.await();
+
+			Slot oldest = null;
+			for (Slot slot : slots.values()) {
+				if (slot.letters.isEmpty()) continue;
+				if (oldest == null || slot.letters.peek().number < oldest.letters.peek().number)
+					oldest = slot;
+			}
+
+			return take(oldest);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the {@link Letter} with the given key that was accepted the longest time ago. If this
+	 * {@link SelectiveMailbox} does not store a {@link Letter} with the given key when this method is called, it will
+	 * block until such a {@link Letter} was accepted or the blocking {@link Thread} was interrupted. {@link Letter}s
+	 * with other keys are not touched.
+	 *
+	 * @param key the key of the {@link Letter} to receive
+	 *
+	 * @return the {@link Letter}
+	 *
+	 * @throws InterruptedException if a waiting {@link Thread} was interrupted
+	 */
+	public Letter receive(Key key) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			Slot slot = slot(key);
+			slot.waiting++;
+			try {
+				while (slot.letters.isEmpty())
+					slot.arrived.await();
+			} finally {
+				slot.waiting--;
+				prune(slot);
+			}
+
+			return take(slot);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a {@link Letter} like {@link #receive(Object)} does but waits at most the given time. If no
+	 * {@link Letter} with the given key was accepted in time, this method returns {@code null}.
+	 *
+	 * @param key the key of the {@link Letter} to receive
+	 * @param timeout how long to wait before giving up, in units of {@code unit}
+	 * @param unit the {@link TimeUnit} of {@code timeout}
+	 *
+	 * @return the {@link Letter} or {@code null} if the time elapsed
+	 *
+	 * @throws InterruptedException if a waiting {@link Thread} was interrupted
+	 */
+	public Letter receive(Key key, long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+
+		lock.lockInterruptibly();
+		try {
+			Slot slot = slot(key);
+			slot.waiting++;
+			try {
+				while (slot.letters.isEmpty()) {
+					if (nanos <= 0)
+						return null;
+					nanos = slot.arrived.awaitNanos(nanos);
+				}
+			} finally {
+				slot.waiting--;
+				prune(slot);
+			}
+
+			return take(slot);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the {@link Letter} that passes the given {@link Filter} and was accepted the longest time ago. If this
+	 * {@link SelectiveMailbox} does not store such a {@link Letter} when this method is called, it will block until
+	 * such a {@link Letter} was accepted or the blocking {@link Thread} was interrupted. Any {@link Letter} that does
+	 * not pass the {@link Filter} stays where it is.
+	 *
+	 * @param filter the {@link Filter} the {@link Letter} must pass
+	 *
+	 * @return the {@link Letter}
+	 *
+	 * @throws InterruptedException if a waiting {@link Thread} was interrupted
+	 * @throws IllegalArgumentException if {@code filter} is {@code null}
+	 */
+	public Letter receive(Filter<? super Letter> filter) throws InterruptedException {
+		if (filter == null)
+			throw new IllegalArgumentException("filter == null");
+
+		lock.lockInterruptibly();
+		try {
+			// any letter with a number below 'checked' was already rejected by the filter
+			long checked = 0;
+			while (true) {
+				Slot match = null;
+				Entry<Letter> matchEntry = null;
+
+				for (Slot slot : slots.values()) {
+					// the letters of a slot are ordered by number, so the first match is the oldest one
+					for (Entry<Letter> entry : slot.letters) {
+						if (entry.number < checked || !filter.matches(entry.letter)) continue;
+						if (matchEntry == null || entry.number < matchEntry.number) {
+							match = slot;
+							matchEntry = entry;
+						}
+						break;
+					}
+				}
+
+				if (match != null) {
+					match.letters.remove(matchEntry);
+					stored--;
+					prune(match);
+					return matchEntry.letter;
+				}
+
+				checked = accepted;
+				arrived.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the {@link Letter} with the given key like {@link #receive(Object)} does but never blocks. If this
+	 * {@link SelectiveMailbox} does not store a {@link Letter} with the given key, this method returns {@code null}.
+	 *
+	 * @param key the key of the {@link Letter} to receive
+	 *
+	 * @return the {@link Letter} or {@code null} if there is no {@link Letter} with the given key
+	 */
+	public Letter poll(Key key) {
+		lock.lock();
+		try {
+			Slot slot = slots.get(key);
+			return slot == null || slot.letters.isEmpty() ? null : take(slot);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes at most the given number of {@link Letter}s with the given key from this {@link SelectiveMailbox} and
+	 * adds them to the given {@link Collection}. The {@link Letter}s are added in the order {@link #receive(Object)}
+	 * would have returned them. This method never blocks.
+	 *
+	 * @param key the key of the {@link Letter}s to remove
+	 * @param letters the {@link Collection} to add the {@link Letter}s to
+	 * @param maxLetters the maximal number of {@link Letter}s to remove
+	 *
+	 * @return the number of {@link Letter}s that were added
+	 *
+	 * @throws IllegalArgumentException if {@code letters} is {@code null}
+	 */
+	public int drainTo(Key key, Collection<? super Letter> letters, int maxLetters) {
+		if (letters == null)
+			throw new IllegalArgumentException("letters == null");
+
+		lock.lock();
+		try {
+			Slot slot = slots.get(key);
+			if (slot == null)
+				return 0;
+
+			int result = 0;
+			Iterator<Entry<Letter>> it = slot.letters.iterator();
+			while (result < maxLetters && it.hasNext()) {
+				letters.add(it.next().letter);
+				it.remove();
+				result++;
+			}
+			stored -= result;
+			prune(slot);
+
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns if this {@link SelectiveMailbox} has a {@link Letter} with the given key at the moment. Please do not
+	 * rely on the result in a multi-threaded environment. Another thread may steal "your" {@link Letter}.
+	 *
+	 * @param key the key
+	 *
+	 * @return if this {@link SelectiveMailbox} stores a {@link Letter} with the given key
+	 */
+	public boolean hasLetter(Key key) {
+		lock.lock();
+		try {
+			Slot slot = slots.get(key);
+			return slot != null && !slot.letters.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns if this {@link SelectiveMailbox} has a {@link Letter} at the moment. Please do not rely on the result
+	 * in a multi-threaded environment. Another thread may steal "your" {@link Letter}.
+	 *
+	 * @return if this {@link SelectiveMailbox} stores a {@link Letter}
+	 */
+	public boolean hasLetter() {
+		lock.lock();
+		try {
+			return stored > 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of keys this {@link SelectiveMailbox} keeps a queue for at the moment.
+	 *
+	 * @return the number of keys
+	 */
+	int keys() {
+		lock.lock();
+		try {
+			return slots.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Slot slot(Key key) {
+		Slot result = slots.get(key);
+		if (result == null) {
+			result = new Slot(key);
+			slots.put(key, result);
+		}
+		return result;
+	}
+
+	private Letter take(Slot slot) {
+		stored--;
+		Letter result = slot.letters.poll().letter;
+		prune(slot);
+		return result;
+	}
+
+	// forgets a slot that holds no letter and that nobody waits for, requires the lock
+	private void prune(Slot slot) {
+		if (slot.letters.isEmpty() && slot.waiting == 0)
+			slots.remove(slot.key);
+	}
+
+	private class Slot {
+
+		private final Key key;
+		private final ArrayDeque<Entry<Letter>> letters = new ArrayDeque<>();
+		private final Condition arrived = lock.newCondition();
+		// the number of threads that wait for a letter with this key
+		private int waiting = 0;
+
+		private Slot(Key key) {
+			this.key = key;
+		}
+
+	}
+
+	private static class Entry<Letter> {
+
+		private final long number;
+		private final Letter letter;
+
+		public Entry(long number, Letter letter) {
+			this.number = number;
+			this.letter = letter;
+		}
+
+	}
+
+}
@@ -5,7 +5,8 @@ import de.teiesti.postie.Recipient;
 
 /**
  * A {@link SimpleRecipient} is a {@link Recipient} but without the requirement to implement
- * {@link #noticeStart(Postman)} and {@link #noticeStop(Postman)}. If not overwritten, both methods will do nothing.
+ * {@link #noticeStart(Postman)}, {@link #noticeStop(Postman)} and {@link #noticeError(Throwable, Postman)}. If not
+ * overwritten, these methods will do nothing.
  *
  * @param <Letter> type of the letters
  */
@@ -31,4 +32,15 @@ public abstract class SimpleRecipient<Letter> implements Recipient<Letter> {
 		/* nothing to do */
 	}
 
+	/**
+	 * Does nothing.
+	 *
+	 * @param error the error that made the connection fail - not used
+	 * @param from the {@link Postman} that failed - not used
+	 */
+	@Override
+	public void noticeError(Throwable error, Postman from) {
+		/* nothing to do */
+	}
+
 }
@@ -1,62 +1,111 @@
 package de.teiesti.postie.serializers;
 
 import de.teiesti.postie.Serializer;
+import de.teiesti.postie.io.FrameReader;
 import de.teiesti.postie.serializers.matcher.KnuthMorrisPrattMatcher;
 import de.teiesti.postie.serializers.matcher.Matcher;
-import org.pmw.tinylog.Logger;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 
 /**
- * An {@link AbstractSerializer} is a {@link Serializer} that implements {@link #encodeNext(java.io.Writer, Object)} and
- * {@link #decodeNext(java.io.Reader)} by using {@link #encode(Object)}, {@link #decode(String)} and
- * {@link #separator()} in a generic way.
+ * An {@link AbstractSerializer} is a {@link Serializer} that implements {@link #encodeNext(java.io.Writer, Object)},
+ * {@link #decodeNext(java.io.Reader)} and {@link #readNext(java.io.Reader)} by using {@link #encode(Object)},
+ * {@link #decode(String)} and {@link #separator()} in a generic way.<br>
+ * <br>
+ * An {@link AbstractSerializer} asks {@link #separator()} only once, when it is created. Any {@link Thread} that reads
+ * with {@link #readNext(Reader)} reuses its own buffer and separator matcher. Hence reading a raw {@link Letter} does
+ * not create any garbage but the resulting {@link String}. If the {@link Reader} is a {@link FrameReader}, the raw
+ * {@link Letter} is read with {@link FrameReader#readFrame(String)}, which decodes it right from the buffer of the
+ * {@link FrameReader}.
  *
  * @param <Letter> type of the letters
  */
 public abstract class AbstractSerializer<Letter> implements Serializer<Letter> {
 
-	private Matcher blueprint;
+	/**
+	 * A buffer that grew beyond this number of characters is not kept for the next raw {@link Letter}, so that a single
+	 * huge {@link Letter} does not occupy its memory forever.
+	 */
+	private static final int MAX_KEPT_CAPACITY = 1 << 16;
+
+	private final String separator;
+	private final Matcher blueprint;
+
+	// the buffer and the matcher of each reading thread, which is a receiving thread of a postman
+	private final ThreadLocal<ReadState> readState = new ThreadLocal<ReadState>() {
+		@Override
+		protected ReadState initialValue() {
+			return new ReadState();
+		}
+	};
 
 	/**
 	 * Creates a new {@link AbstractSerializer}.
 	 */
 	public AbstractSerializer() {
+		separator = separator();
 		blueprint = new KnuthMorrisPrattMatcher();
-		blueprint.initialize(separator());
+		blueprint.initialize(separator);
 	}
 
 	@Override
 	public void encodeNext(Writer writer, Letter letter) throws IOException {
 		String rawLetter = encode(letter);
 		writer.write(rawLetter);
-		writer.write(separator());
+		writer.write(separator);
 	}
 
 	@Override
 	public Letter decodeNext(Reader reader) throws IOException {
-		StringBuilder rawLetter = new StringBuilder();
-
-		Matcher matcher = null;
-		try {
-			matcher = blueprint.clone();
-		} catch (CloneNotSupportedException e) {
-			Logger.error(e);
-			System.exit(1);
-		}
+		String rawLetter = readNext(reader);
+		return rawLetter == null ? null : decode(rawLetter);
+	}
+
+	@Override
+	public String readNext(Reader reader) throws IOException {
+		// a frame reader searches the separator in its own buffer
+		if (reader instanceof FrameReader)
+			return ((FrameReader) reader).readFrame(separator);
 
-		for (int c = reader.read(); c != -1; c = reader.read()) {
+		ReadState state = readState.get();
+		StringBuilder rawLetter = state.buffer;
+		Matcher matcher = state.matcher;
+
+		int c = reader.read();
+		if (c == -1)
+			return null;
+
+		rawLetter.setLength(0);
+		matcher.reset();
+		for (; c != -1; c = reader.read()) {
 			rawLetter.append((char) c);
 			if (matcher.feed((char) c)) {
-				rawLetter.delete(rawLetter.length() - separator().length(), rawLetter.length());
-				matcher.reset();
+				rawLetter.setLength(rawLetter.length() - separator.length());
 				break;
 			}
 		}
 
-		return decode(rawLetter.toString());
+		String result = rawLetter.toString();
+		if (rawLetter.capacity() > MAX_KEPT_CAPACITY)
+			state.buffer = new StringBuilder();
+		return result;
+	}
+
+	private class ReadState {
+
+		private StringBuilder buffer = new StringBuilder();
+		private final Matcher matcher;
+
+		private ReadState() {
+			try {
+				matcher = blueprint.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException("cannot clone the separator matcher", e);
+			}
+		}
+
 	}
 
 }
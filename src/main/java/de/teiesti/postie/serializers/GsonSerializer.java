@@ -10,6 +10,8 @@ import com.google.gson.Gson;
  */
 public class GsonSerializer<Letter> extends AbstractSerializer<Letter> {
 
+	private static final String SEPARATOR = "\n";
+
 	private static Gson gson = new Gson();
 	private Class<Letter> letterClass;
 
@@ -56,7 +58,7 @@ public class GsonSerializer<Letter> extends AbstractSerializer<Letter> {
 	 */
 	@Override
 	public String separator() {
-		return Character.toString('\n');
+		return SEPARATOR;
 	}
 
 }
@@ -0,0 +1,121 @@
+package de.teiesti.postie.warehouses;
+
+import de.teiesti.postie.Parcel;
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.Warehouse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link BufferWarehouse} is a {@link Warehouse} that stores any received {@link Parcel} in a direct
+ * {@link ByteBuffer}. So the bytes of a {@link Parcel} do not occupy the heap. You can receive the filled
+ * {@link ByteBuffer}s with {@link #receive()} in the order the {@link Parcel}s were completely stored. A
+ * {@link BufferWarehouse} cannot store a {@link Parcel} that is larger than {@link Integer#MAX_VALUE} bytes.
+ */
+public class BufferWarehouse implements Warehouse {
+
+	private final BlockingQueue<ByteBuffer> stored = new LinkedBlockingQueue<>();
+
+	/**
+	 * Allocates a direct {@link ByteBuffer} of the given size and returns a {@link WritableByteChannel} that writes
+	 * into it.
+	 *
+	 * @param size the size of the {@link Parcel}
+	 * @param from the {@link Postman} that receives the {@link Parcel} - not used
+	 *
+	 * @return a {@link WritableByteChannel} that writes into a new {@link ByteBuffer}
+	 *
+	 * @throws IOException if the {@link Parcel} is larger than {@link Integer#MAX_VALUE} bytes
+	 */
+	@Override
+	public WritableByteChannel store(long size, Postman from) throws IOException {
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("parcel too large for a buffer: " + size + " bytes");
+
+		return new BufferChannel(ByteBuffer.allocateDirect((int) size));
+	}
+
+	/**
+	 * Makes the {@link ByteBuffer} behind the given {@link WritableByteChannel} available through {@link #receive()}.
+	 * The {@link ByteBuffer} is flipped, so it is ready to be read.
+	 *
+	 * @param target the {@link WritableByteChannel} the {@link Parcel} was written to
+	 * @param from the {@link Postman} that received the {@link Parcel} - not used
+	 */
+	@Override
+	public void stored(WritableByteChannel target, Postman from) {
+		ByteBuffer buffer = ((BufferChannel) target).buffer;
+		buffer.flip();
+		stored.add(buffer);
+	}
+
+	/**
+	 * Closes the given {@link WritableByteChannel}. The {@link ByteBuffer} behind it, which contains a part of a
+	 * {@link Parcel} only, is thrown away.
+	 *
+	 * @param target the {@link WritableByteChannel} the {@link Parcel} was partially written to
+	 * @param from the {@link Postman} that failed to receive the {@link Parcel} - not used
+	 */
+	@Override
+	public void abort(WritableByteChannel target, Postman from) {
+		((BufferChannel) target).close();
+	}
+
+	/**
+	 * Returns a {@link ByteBuffer} that contains a received {@link Parcel}. If no {@link Parcel} was stored yet, this
+	 * method blocks until a {@link Parcel} was stored or the blocking {@link Thread} was interrupted.
+	 *
+	 * @return the {@link ByteBuffer}
+	 *
+	 * @throws InterruptedException if a waiting {@link Thread} was interrupted
+	 */
+	public ByteBuffer receive() throws InterruptedException {
+		return stored.take();
+	}
+
+	/**
+	 * Returns a {@link ByteBuffer} like {@link #receive()} does but never blocks. If no {@link Parcel} was stored,
+	 * this method returns {@code null}.
+	 *
+	 * @return the {@link ByteBuffer} or {@code null}
+	 */
+	public ByteBuffer poll() {
+		return stored.poll();
+	}
+
+	private static class BufferChannel implements WritableByteChannel {
+
+		private final ByteBuffer buffer;
+		private boolean open = true;
+
+		public BufferChannel(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			if (src.remaining() > buffer.remaining())
+				throw new IOException("parcel exceeds its announced size");
+
+			int result = src.remaining();
+			buffer.put(src);
+			return result;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+
+	}
+
+}
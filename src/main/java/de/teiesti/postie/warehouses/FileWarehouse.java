@@ -0,0 +1,118 @@
+package de.teiesti.postie.warehouses;
+
+import de.teiesti.postie.Parcel;
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.Warehouse;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link FileWarehouse} is a {@link Warehouse} that stores any received {@link Parcel} in a new file within a given
+ * directory. The bytes are written with a {@link FileChannel}. You can receive the {@link Path}s of the stored files
+ * with {@link #receive()} in the order the {@link Parcel}s were completely stored. The files are not deleted by this
+ * {@link FileWarehouse}.
+ */
+public class FileWarehouse implements Warehouse {
+
+	private final Path directory;
+
+	private final Map<WritableByteChannel, Path> storing = new ConcurrentHashMap<>();
+	private final BlockingQueue<Path> stored = new LinkedBlockingQueue<>();
+
+	/**
+	 * Creates a new {@link FileWarehouse} that stores the received {@link Parcel}s in the given directory.
+	 *
+	 * @param directory the directory to create the files in
+	 *
+	 * @throws IllegalArgumentException if {@code directory} is {@code null}
+	 */
+	public FileWarehouse(Path directory) {
+		if (directory == null)
+			throw new IllegalArgumentException("directory == null");
+
+		this.directory = directory;
+	}
+
+	/**
+	 * Creates a new file in the directory of this {@link FileWarehouse} and returns a {@link FileChannel} that writes
+	 * into it.
+	 *
+	 * @param size the size of the {@link Parcel} - not used
+	 * @param from the {@link Postman} that receives the {@link Parcel} - not used
+	 *
+	 * @return a {@link FileChannel} that writes into the new file
+	 *
+	 * @throws IOException if the file cannot be created
+	 */
+	@Override
+	public WritableByteChannel store(long size, Postman from) throws IOException {
+		Path file = Files.createTempFile(directory, "parcel", null);
+		FileChannel result = FileChannel.open(file, StandardOpenOption.WRITE);
+		storing.put(result, file);
+		return result;
+	}
+
+	/**
+	 * Closes the given {@link FileChannel} and makes the file available through {@link #receive()}.
+	 *
+	 * @param target the {@link FileChannel} the {@link Parcel} was written to
+	 * @param from the {@link Postman} that received the {@link Parcel} - not used
+	 *
+	 * @throws IOException if the {@link FileChannel} cannot be closed
+	 */
+	@Override
+	public void stored(WritableByteChannel target, Postman from) throws IOException {
+		target.close();
+		stored.add(storing.remove(target));
+	}
+
+	/**
+	 * Closes the given {@link FileChannel} and deletes the file, which contains a part of a {@link Parcel} only.
+	 *
+	 * @param target the {@link FileChannel} the {@link Parcel} was partially written to
+	 * @param from the {@link Postman} that failed to receive the {@link Parcel} - not used
+	 *
+	 * @throws IOException if the {@link FileChannel} cannot be closed or the file cannot be deleted
+	 */
+	@Override
+	public void abort(WritableByteChannel target, Postman from) throws IOException {
+		Path file = storing.remove(target);
+		try {
+			target.close();
+		} finally {
+			if (file != null) Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Returns the {@link Path} of a file that contains a received {@link Parcel}. If no {@link Parcel} was stored
+	 * yet, this method blocks until a {@link Parcel} was stored or the blocking {@link Thread} was interrupted.
+	 *
+	 * @return the {@link Path} of the file
+	 *
+	 * @throws InterruptedException if a waiting {@link Thread} was interrupted
+	 */
+	public Path receive() throws InterruptedException {
+		return stored.take();
+	}
+
+	/**
+	 * Returns the {@link Path} of a file like {@link #receive()} does but never blocks. If no {@link Parcel} was
+	 * stored, this method returns {@code null}.
+	 *
+	 * @return the {@link Path} of the file or {@code null}
+	 */
+	public Path poll() {
+		return stored.poll();
+	}
+
+}
@@ -0,0 +1,135 @@
+package de.teiesti.postie;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class FairExecutorTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	private static Runnable await(final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+	private static Runnable log(final List<String> log, final String entry) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				log.add(entry);
+			}
+		};
+	}
+
+	@Test
+	public void fairnessTest() throws InterruptedException {
+		FairExecutor executor = new FairExecutor(1, 100);
+		ExecutorService noisy = executor.lane();
+		ExecutorService quiet = executor.lane();
+
+		// the only thread is busy while the jobs are queued
+		CountDownLatch blocked = new CountDownLatch(1);
+		noisy.execute(await(blocked));
+
+		List<String> log = Collections.synchronizedList(new ArrayList<String>());
+		for (int i = 0; i < 10; i++)
+			noisy.execute(log(log, "noisy"));
+		quiet.execute(log(log, "quiet"));
+		blocked.countDown();
+
+		noisy.shutdown();
+		quiet.shutdown();
+		executor.shutdown();
+		assertThat(executor.awaitTermination(1, TimeUnit.SECONDS), is(true));
+
+		// the quiet lane does not wait for all jobs of the noisy one
+		assertThat(log.size(), is(11));
+		assertThat(log.indexOf("quiet") <= 1, is(true));
+	}
+
+	@Test
+	public void queueDepthTest() throws InterruptedException {
+		FairExecutor executor = new FairExecutor(1, 1);
+		final ExecutorService lane = executor.lane();
+
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch taken = new CountDownLatch(1);
+		lane.execute(new Runnable() {
+			@Override
+			public void run() {
+				taken.countDown();
+				await(blocked).run();
+			}
+		});
+		taken.await();
+		lane.execute(await(blocked));
+
+		// a second waiting job does not fit
+		final CountDownLatch submitted = new CountDownLatch(1);
+		new Thread() {
+			@Override
+			public void run() {
+				lane.execute(await(blocked));
+				submitted.countDown();
+			}
+		}.start();
+		assertThat(submitted.await(50, TimeUnit.MILLISECONDS), is(false));
+
+		blocked.countDown();
+		assertThat(submitted.await(1, TimeUnit.SECONDS), is(true));
+
+		lane.shutdown();
+		assertThat(lane.awaitTermination(1, TimeUnit.SECONDS), is(true));
+		executor.shutdown();
+		assertThat(executor.awaitTermination(1, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test
+	public void shutdownTest() throws InterruptedException {
+		FairExecutor executor = new FairExecutor(2, 10);
+		ExecutorService lane = executor.lane();
+		executor.shutdown();
+
+		try {
+			executor.lane();
+			fail();
+		} catch (IllegalStateException e) {}
+
+		// an open lane keeps the threads alive
+		assertThat(executor.awaitTermination(50, TimeUnit.MILLISECONDS), is(false));
+		List<String> log = Collections.synchronizedList(new ArrayList<String>());
+		lane.execute(log(log, "late"));
+
+		lane.shutdown();
+		try {
+			lane.execute(log(log, "too late"));
+			fail();
+		} catch (RejectedExecutionException e) {}
+
+		assertThat(executor.awaitTermination(1, TimeUnit.SECONDS), is(true));
+		assertThat(log, is((List<String>) Collections.singletonList("late")));
+	}
+
+}
@@ -0,0 +1,89 @@
+package de.teiesti.postie;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FlushPolicyTest {
+
+	private static final long MAX_DELAY = 1000;
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	// writes letters in the given interval, starting at the given time, and returns the time of the last one
+	private static long write(FlushPolicy policy, long start, long interval, int letters) {
+		long now = start;
+		for (int i = 0; i < letters; i++) {
+			now = start + i * interval;
+			policy.written(now);
+		}
+		return now;
+	}
+
+	@Test
+	public void idleTest() {
+		FlushPolicy policy = new FlushPolicy(MAX_DELAY);
+
+		// a letter now and then is flushed at once
+		long now = 0;
+		for (int i = 0; i < 10; i++) {
+			now += 10 * MAX_DELAY;
+			policy.written(now);
+			assertThat(policy.linger(now), is(0L));
+			policy.flushed();
+		}
+	}
+
+	@Test
+	public void busyTest() {
+		FlushPolicy policy = new FlushPolicy(MAX_DELAY);
+
+		long now = write(policy, 0, 10, 50);
+		assertThat(policy.overdue(now), is(false));
+
+		// the next letter should come soon, but the first one must not wait too long
+		long linger = policy.linger(now);
+		assertThat(linger > 0 && linger <= MAX_DELAY - now, is(true));
+
+		now = write(policy, now, 10, 100);
+		assertThat(policy.overdue(now), is(true));
+		policy.flushed();
+		assertThat(policy.overdue(now), is(false));
+	}
+
+	@Test
+	public void inVainTest() {
+		FlushPolicy policy = new FlushPolicy(MAX_DELAY);
+
+		long now = write(policy, 0, 10, 50);
+		policy.lingered(false);
+
+		// lingering in vain stops lingering except for a probe now and then
+		int lingered = 0;
+		for (int i = 0; i < 32; i++) {
+			policy.flushed();
+			now += 10;
+			policy.written(now);
+			if (policy.linger(now) > 0) lingered++;
+		}
+		assertThat(lingered, is(2));
+
+		// lingering that pays off again restores it
+		policy.lingered(true);
+		assertThat(policy.linger(now) > 0, is(true));
+	}
+
+	@Test
+	public void disabledTest() {
+		FlushPolicy policy = new FlushPolicy(0);
+
+		long now = write(policy, 0, 1, 100);
+		assertThat(policy.linger(now), is(0L));
+		assertThat(policy.overdue(now), is(false));
+	}
+
+}
@@ -1,5 +1,6 @@
 package de.teiesti.postie;
 
+import de.teiesti.postie.postmen.ParallelPostman;
 import de.teiesti.postie.postmen.SequentialPostman;
 import de.teiesti.postie.recipients.Mailbox;
 import de.teiesti.postie.serializers.GsonSerializer;
@@ -9,8 +10,10 @@ import org.junit.rules.Timeout;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -77,6 +80,159 @@ public class OfficeTest {
 		assertThat(results.isEmpty(), is(true));
 	}
 
+	@Test
+	public void reapTest() throws IOException, InterruptedException {
+		Office oscar = new Office();
+		oscar.spawn(aliceBlueprint);
+		oscar.bind(new ServerSocket(port - 5));
+		oscar.reapIdle(100, TimeUnit.MILLISECONDS);
+		oscar.start();
+
+		Postman silentBob = createBob(port - 5).start();
+		Postman beatingBob = createBob(port - 5).heartbeat(10, TimeUnit.MILLISECONDS).start();
+
+		// the office closes the silent connection, so bob reads EOF
+		while (silentBob.isRunning());	// spinlock that waits for the other thread
+		assertThat(beatingBob.isRunning(), is(true));
+
+		Thread.sleep(200);
+		assertThat(beatingBob.isRunning(), is(true));
+
+		beatingBob.stop();
+		oscar.stop(true);
+	}
+
+	@Test
+	public void shutdownTest() throws IOException, InterruptedException {
+		Office oscar = new Office();
+		oscar.spawn(aliceBlueprint);
+		oscar.bind(new ServerSocket(port - 6));
+		oscar.start();
+
+		Postman[] bobs = new Postman[42];
+		for (int i = 0; i < bobs.length; i++)
+			bobs[i] = createBob(port - 6).start();
+
+		// a client that never closes its side, so its postman must be aborted
+		Socket stubborn = new Socket("localhost", port - 6);
+
+		for (int i = 0; i < bobs.length; i++)
+			bobs[i].send(i);
+		for (int i = 0; i < bobs.length; i++)
+			aliceMailbox.receive();
+
+		oscar.shutdown(200, TimeUnit.MILLISECONDS);
+		assertThat(oscar.isRunning(), is(false));
+
+		for (int i = 0; i < bobs.length; i++)
+			while (bobs[i].isRunning());	// spinlock that waits for the other thread
+		assertThat(stubborn.getInputStream().read(), is(-1));
+
+		stubborn.close();
+	}
+
+	@Test
+	public void deliverTest() throws IOException, InterruptedException {
+		Postman blueprint = new ParallelPostman().observeLetterOrder(false);
+		blueprint.use(new GsonSerializer(Integer.class));
+		blueprint.register(aliceMailbox);
+
+		Office oscar = new Office();
+		oscar.spawn(blueprint);
+		oscar.bind(new ServerSocket(port - 7));
+		oscar.deliver(2, 4);
+		oscar.start();
+
+		Postman bob1 = createBob(port - 7).start();
+		Postman bob2 = createBob(port - 7).start();
+
+		Set<Integer> results = new HashSet<>();
+		for (int i = 0; i < 100; i++) {
+			(i % 2 == 0 ? bob1 : bob2).send(i);
+			results.add(i);
+		}
+		for (int i = 0; i < 100; i++)
+			assertThat(results.remove(aliceMailbox.receive()), is(true));
+
+		bob1.stop();
+		oscar.stop(true);
+		assertThat(oscar.isRunning(), is(false));
+		while (bob2.isRunning());	// spinlock that waits for the other thread
+	}
+
+	@Test
+	public void deliverManyRecipientsTest() throws IOException, InterruptedException {
+		Postman blueprint = new ParallelPostman().observeLetterOrder(false);
+		blueprint.use(new GsonSerializer(Integer.class));
+
+		Office oscar = new Office();
+		oscar.spawn(blueprint);
+		// registered after the office's own recipient, so their stop is reported after it
+		Mailbox[] mailboxes = new Mailbox[50];
+		for (int i = 0; i < mailboxes.length; i++) {
+			mailboxes[i] = new Mailbox();
+			blueprint.register(mailboxes[i]);
+		}
+		oscar.bind(new ServerSocket(port - 8));
+		oscar.deliver(4, 16);
+		oscar.start();
+
+		Postman bob1 = createBob(port - 8).start();
+		Postman bob2 = createBob(port - 8).start();
+
+		for (int i = 0; i < 10; i++) {
+			bob1.send(i);
+			bob2.send(i);
+		}
+		for (Mailbox m : mailboxes)
+			for (int i = 0; i < 20; i++)
+				m.receive();
+
+		// both sides stop: the client and the office
+		bob1.stop();
+		oscar.stop(true);
+		assertThat(oscar.isRunning(), is(false));
+		while (bob2.isRunning());	// spinlock that waits for the other thread
+	}
+
+	@Test
+	public void startFailureTest() throws IOException {
+		// a postman without a serializer cannot be started
+		Postman blueprint = new ParallelPostman();
+
+		Office oscar = new Office();
+		oscar.spawn(blueprint);
+		oscar.bind(new ServerSocket(port - 9));
+		oscar.deliver(1, 1);
+		oscar.start();
+
+		// the office closes each connection it cannot serve, but keeps accepting
+		for (int i = 0; i < 3; i++) {
+			Socket socket = new Socket("localhost", port - 9);
+			assertThat(socket.getInputStream().read(), is(-1));
+			socket.close();
+		}
+		assertThat(oscar.isRunning(), is(true));
+
+		oscar.stop(true);
+		assertThat(oscar.isRunning(), is(false));
+	}
+
+	@Test
+	public void acceptFailureTest() throws IOException {
+		// a server channel that is not bound fails on every accept
+		ServerSocketChannel unbound = ServerSocketChannel.open();
+
+		Office oscar = new Office();
+		oscar.spawn(new SequentialPostman());
+		oscar.bind(unbound);
+		oscar.start();
+
+		// the office stops accepting instead of trying again and again
+		while (oscar.isRunning());	// spinlock that waits for the other thread
+		unbound.close();
+	}
+
 	@After
 	public void after() {
 		olaf.stop(true);
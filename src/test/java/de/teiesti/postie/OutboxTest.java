@@ -0,0 +1,159 @@
+package de.teiesti.postie;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OutboxTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Test
+	public void fifoTest() throws InterruptedException {
+		Outbox outbox = new Outbox();
+
+		for (int i = 0; i < 10; i++)
+			outbox.add(i);
+
+		for (int i = 0; i < 10; i++)
+			assertThat(outbox.take(), is((Object) i));
+		assertThat(outbox.isEmpty(), is(true));
+		assertThat(outbox.poll(10, TimeUnit.MILLISECONDS), is(nullValue()));
+	}
+
+	@Test
+	public void strictTest() throws InterruptedException {
+		Outbox outbox = new Outbox(3);
+
+		outbox.add("bulk 1", 0);
+		outbox.add("bulk 2", 0);
+		outbox.add("normal", 1);
+		outbox.add("urgent", 2);
+		outbox.addFirst("control");
+
+		assertThat(outbox.take(), is((Object) "control"));
+		assertThat(outbox.take(), is((Object) "urgent"));
+		assertThat(outbox.take(), is((Object) "normal"));
+		assertThat(outbox.take(), is((Object) "bulk 1"));
+		assertThat(outbox.take(), is((Object) "bulk 2"));
+		assertThat(outbox.poll(), is(nullValue()));
+
+		try {
+			outbox.add("nowhere", 3);
+			fail();
+		} catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void weightedTest() {
+		Outbox outbox = new Outbox(new int[] { 1, 3 });
+
+		for (int i = 0; i < 8; i++) {
+			outbox.add("bulk", 0);
+			outbox.add("urgent", 1);
+		}
+
+		// no lane starves: three urgent letters per bulk letter as long as both lanes have letters
+		Object[] expected = { "urgent", "urgent", "urgent", "bulk", "urgent", "urgent", "urgent", "bulk",
+				"urgent", "urgent", "bulk", "bulk", "bulk", "bulk", "bulk", "bulk" };
+		Object[] taken = new Object[expected.length];
+		for (int i = 0; i < taken.length; i++)
+			taken[i] = outbox.poll();
+
+		assertThat(Arrays.asList(taken), is(Arrays.asList(expected)));
+		assertThat(outbox.isEmpty(), is(true));
+	}
+
+	@Test
+	public void conflateTest() {
+		Outbox outbox = new Outbox(2);
+
+		assertThat(outbox.add("a1", 0, "a"), is(false));
+		assertThat(outbox.add("b1", 0, "b"), is(false));
+		assertThat(outbox.add("x", 0, null), is(false));
+		assertThat(outbox.add("a2", 0, "a"), is(true));
+		// a replacing item keeps the position of the replaced one
+		assertThat(outbox.add("b2", 1, "b"), is(true));
+
+		assertThat(outbox.poll(), is((Object) "a2"));
+		assertThat(outbox.poll(), is((Object) "b2"));
+
+		// an item that was taken is not replaced any more
+		assertThat(outbox.add("a3", 0, "a"), is(false));
+		assertThat(outbox.poll(), is((Object) "x"));
+		assertThat(outbox.poll(), is((Object) "a3"));
+		assertThat(outbox.isEmpty(), is(true));
+	}
+
+	@Test
+	public void removeAllTest() {
+		Outbox outbox = new Outbox(2);
+		Object marker = new Object();
+
+		outbox.add(marker, 0);
+		outbox.add("letter", 1);
+		outbox.addFirst(marker);
+		outbox.removeAll(marker);
+
+		assertThat(outbox.poll(), is((Object) "letter"));
+		assertThat(outbox.isEmpty(), is(true));
+	}
+
+	@Test
+	public void addAllFirstTest() {
+		Outbox outbox = new Outbox();
+		outbox.add(3);
+
+		Deque<Object> resend = new ArrayDeque<>();
+		resend.add(1);
+		resend.add(2);
+		outbox.addAllFirst(resend);
+
+		for (int i = 1; i <= 3; i++)
+			assertThat(outbox.poll(), is((Object) i));
+	}
+
+	@Test
+	public void moveToTest() {
+		Outbox outbox = new Outbox(3);
+		outbox.add("bulk", 0);
+		outbox.add("urgent", 2);
+
+		// the urgent letter moves to the most urgent lane that is left
+		Outbox target = new Outbox(2);
+		outbox.moveTo(target);
+
+		assertThat(outbox.isEmpty(), is(true));
+		assertThat(target.poll(), is((Object) "urgent"));
+		assertThat(target.poll(), is((Object) "bulk"));
+	}
+
+	@Test
+	public void wakeUpTest() throws InterruptedException {
+		final Outbox outbox = new Outbox(2);
+
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {}
+				outbox.add("urgent", 1);
+			}
+		}.start();
+
+		assertThat(outbox.take(), is((Object) "urgent"));
+	}
+
+}
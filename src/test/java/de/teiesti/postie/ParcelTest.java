@@ -0,0 +1,142 @@
+package de.teiesti.postie;
+
+import de.teiesti.postie.postmen.SequentialPostman;
+import de.teiesti.postie.recipients.Mailbox;
+import de.teiesti.postie.serializers.GsonSerializer;
+import de.teiesti.postie.warehouses.BufferWarehouse;
+import de.teiesti.postie.warehouses.FileWarehouse;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ParcelTest {
+
+	private Postman<Integer> alice;
+	private Postman<Integer> bob;
+
+	private Mailbox<Integer> aliceMailbox = new Mailbox<>();
+
+	private Socket[] twin;
+
+	private byte[] content;
+	private Path file;
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void before() throws IOException, InterruptedException {
+		alice = new SequentialPostman<>();
+		bob = new SequentialPostman<>();
+
+		alice.use(new GsonSerializer<>(Integer.class));
+		bob.use(new GsonSerializer<>(Integer.class));
+		alice.register(aliceMailbox);
+
+		twin = SocketTwin.create();
+		alice.bind(twin[0]);
+		bob.bind(twin[1]);
+
+		content = new byte[100000];
+		for (int i = 0; i < content.length; i++)
+			content[i] = (byte) i;
+		file = folder.newFile().toPath();
+		Files.write(file, content);
+	}
+
+	@Test
+	public void bufferTest() throws IOException, InterruptedException {
+		BufferWarehouse warehouse = new BufferWarehouse();
+		alice.store(warehouse);
+		alice.start();
+		bob.start();
+
+		bob.send(1);
+		bob.ship(new Parcel(file));
+		bob.send(2);
+
+		assertThat(aliceMailbox.receive(), is(1));
+		assertThat(aliceMailbox.receive(), is(2));
+
+		ByteBuffer received = warehouse.receive();
+		byte[] bytes = new byte[received.remaining()];
+		received.get(bytes);
+		assertThat(Arrays.equals(bytes, content), is(true));
+	}
+
+	@Test
+	public void fileRegionTest() throws IOException, InterruptedException {
+		FileWarehouse warehouse = new FileWarehouse(folder.getRoot().toPath());
+		alice.store(warehouse);
+		alice.start();
+		bob.start();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			bob.ship(new Parcel(channel, 10, 1000));
+			bob.send(42);
+			assertThat(aliceMailbox.receive(), is(42));
+		}
+
+		byte[] bytes = Files.readAllBytes(warehouse.receive());
+		assertThat(Arrays.equals(bytes, Arrays.copyOfRange(content, 10, 1010)), is(true));
+	}
+
+	@Test
+	public void discardTest() throws IOException, InterruptedException {
+		alice.start();
+		bob.start();
+
+		bob.ship(new Parcel(file));
+		bob.send(42);
+
+		assertThat(aliceMailbox.receive(), is(42));
+	}
+
+	@Test
+	public void truncatedTest() throws IOException, InterruptedException {
+		FileWarehouse warehouse = new FileWarehouse(folder.getRoot().toPath());
+		alice.store(warehouse);
+		alice.start();
+
+		// the connection is closed after 10 of 1000 announced bytes, so bob's socket is used raw
+		OutputStream out = twin[1].getOutputStream();
+		out.write("\u0000P1000\n".getBytes(StandardCharsets.UTF_8));
+		out.write(Arrays.copyOf(content, 10));
+		out.flush();
+		twin[1].close();
+		while (alice.isRunning());	// spinlock that waits for the other thread
+
+		// the file of the partial parcel was deleted
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath())) {
+			for (Path f : files)
+				assertThat(f, is(file));
+		}
+		assertThat(warehouse.poll(), is(nullValue()));
+	}
+
+	@After
+	public void after() {
+		if (alice.isRunning()) alice.stop();
+		if (bob.isRunning()) bob.stop();
+	}
+
+}
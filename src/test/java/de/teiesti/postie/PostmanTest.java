@@ -1,14 +1,34 @@
 package de.teiesti.postie;
 
+import de.teiesti.postie.io.BufferPool;
+import de.teiesti.postie.links.SocketConnector;
+import de.teiesti.postie.postmen.SequentialPostman;
 import de.teiesti.postie.recipients.Mailbox;
+import de.teiesti.postie.recipients.SimpleRecipient;
 import de.teiesti.postie.serializers.GsonSerializer;
 import org.junit.*;
 import org.junit.rules.Timeout;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -138,6 +158,393 @@ public abstract class PostmanTest {
 		} catch (IllegalStateException e) {}
 	}
 
+	@Test
+	public void abortTest() {
+		setupStart();
+
+		alice.abort();
+
+		assertThat(alice.isRunning(), is(false));
+		while (bob.isRunning());	// spinlock that waits for the other thread
+		assertThat(bob.isRunning(), is(false));
+
+		try {
+			alice.abort();
+			fail();
+		} catch (IllegalStateException e) {}
+	}
+
+	@Test
+	public void heartbeatTest() throws InterruptedException {
+		alice.heartbeat(10, TimeUnit.MILLISECONDS);
+		setupStart();
+
+		Thread.sleep(200);
+
+		assertThat(bob.idleTime(TimeUnit.MILLISECONDS) < 100, is(true));
+		assertThat(alice.idleTime(TimeUnit.MILLISECONDS) >= 200, is(true));
+	}
+
+	@Test
+	public void errorTest() throws IOException, InterruptedException {
+		setupStart();
+
+		final BlockingQueue<String> notices = new LinkedBlockingQueue<>();
+		Recipient<Integer> recipient = new SimpleRecipient<Integer>() {
+			@Override
+			public void accept(Integer letter, Postman from) {
+				notices.add("accept " + letter);
+			}
+
+			@Override
+			public void noticeError(Throwable error, Postman from) {
+				notices.add("error");
+			}
+
+			@Override
+			public void noticeStop(Postman from) {
+				notices.add("stop");
+			}
+		};
+
+		// a postman cannot send something that the opposite side fails to decode, so carol gets a raw socket
+		Socket[] twin = SocketTwin.create();
+		Postman<Integer> carol = createPostman();
+		carol.use(new GsonSerializer<>(Integer.class));
+		carol.register(recipient);
+		carol.bind(twin[0]).start();
+
+		Writer out = new OutputStreamWriter(twin[1].getOutputStream());
+		out.write("42\nthis is no integer\n");
+		out.flush();
+
+		assertThat(notices.take(), is("accept 42"));
+		assertThat(notices.take(), is("error"));
+		assertThat(notices.take(), is("stop"));
+
+		// the failing connection is closed
+		assertThat(twin[1].getInputStream().read(), is(-1));
+		while (carol.isRunning());	// spinlock that waits for the other thread
+		twin[1].close();
+
+		// but the other one is not affected
+		assertThat(alice.isRunning(), is(true));
+		assertThat(bob.isRunning(), is(true));
+	}
+
+	@Test
+	public void recipientErrorTest() throws IOException, InterruptedException {
+		final BlockingQueue<String> notices = new LinkedBlockingQueue<>();
+		Recipient<Integer> recipient = new SimpleRecipient<Integer>() {
+			@Override
+			public void accept(Integer letter, Postman from) {
+				if (letter == 1) throw new IllegalStateException("cannot accept 1");
+				notices.add("accept " + letter);
+			}
+
+			@Override
+			public void noticeError(Throwable error, Postman from) {
+				notices.add("error " + error.getMessage());
+			}
+
+			@Override
+			public void noticeStop(Postman from) {
+				notices.add("stop");
+			}
+		};
+
+		Socket[] twin = SocketTwin.create();
+		Postman<Integer> carol = createPostman();
+		carol.use(new GsonSerializer<>(Integer.class));
+		carol.register(recipient);
+		carol.bind(twin[0]).start();
+
+		Writer out = new OutputStreamWriter(twin[1].getOutputStream());
+		out.write("0\n1\n2\n");
+		out.flush();
+
+		// a letter after the failing one may be delivered before the connection is closed
+		List<String> received = new ArrayList<>();
+		String notice = notices.take();
+		while (notice.startsWith("accept")) {
+			received.add(notice);
+			notice = notices.take();
+		}
+		assertThat(received.contains("accept 0"), is(true));
+		assertThat(notice, is("error cannot accept 1"));
+		assertThat(notices.take(), is("stop"));
+
+		// the failing connection is closed
+		assertThat(twin[1].getInputStream().read(), is(-1));
+		while (carol.isRunning());	// spinlock that waits for the other thread
+		twin[1].close();
+	}
+
+	@Test
+	public void startErrorTest() throws IOException, InterruptedException {
+		Recipient<Integer> failing = new SimpleRecipient<Integer>() {
+			@Override
+			public void accept(Integer letter, Postman from) {}
+
+			@Override
+			public void noticeStart(Postman from) {
+				throw new IllegalStateException("cannot start");
+			}
+		};
+		final BlockingQueue<String> notices = new LinkedBlockingQueue<>();
+		Recipient<Integer> recipient = new SimpleRecipient<Integer>() {
+			@Override
+			public void accept(Integer letter, Postman from) {}
+
+			@Override
+			public void noticeStart(Postman from) {
+				notices.add("start");
+			}
+
+			@Override
+			public void noticeError(Throwable error, Postman from) {
+				notices.add("error " + error.getMessage());
+			}
+
+			@Override
+			public void noticeStop(Postman from) {
+				notices.add("stop");
+			}
+		};
+
+		Socket[] twin = SocketTwin.create();
+		Postman<Integer> carol = createPostman();
+		carol.use(new GsonSerializer<>(Integer.class));
+		carol.register(failing);
+		carol.register(recipient);
+		carol.bind(twin[0]).start();
+
+		// the other recipient learns about the start, the error and the stop
+		assertThat(notices.take(), is("start"));
+		assertThat(notices.take(), is("error cannot start"));
+		assertThat(notices.take(), is("stop"));
+
+		// the failing connection is closed
+		assertThat(twin[1].getInputStream().read(), is(-1));
+		while (carol.isRunning());	// spinlock that waits for the other thread
+		twin[1].close();
+	}
+
+	@Test
+	public void reconnectTest() throws IOException, InterruptedException {
+		ServerSocket serverSocket = new ServerSocket(0);
+
+		Postman<Integer> carol = createPostman();
+		carol.use(new GsonSerializer<>(Integer.class));
+		carol.reconnect(new SocketConnector("localhost", serverSocket.getLocalPort(), 0), 1, 10,
+				TimeUnit.MILLISECONDS);
+		carol.start();
+
+		// the first connection is lost before any letter was acknowledged
+		Socket first = serverSocket.accept();
+		carol.send(1);
+		carol.send(2);
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(first.getInputStream()));
+		assertThat(in.readLine(), is("\u0000R"));
+		assertThat(in.readLine(), is("1"));
+		assertThat(in.readLine(), is("2"));
+		first.close();
+
+		carol.send(3);
+
+		// the next connection gets the lost letters again before the others: dave keeps the order in any case
+		Mailbox<Integer> daveMailbox = new Mailbox<>();
+		Postman<Integer> dave = new SequentialPostman<>();
+		dave.use(new GsonSerializer<>(Integer.class));
+		dave.register(daveMailbox);
+		dave.bind(serverSocket.accept()).start();
+
+		assertThat(daveMailbox.receive(), is(1));
+		assertThat(daveMailbox.receive(), is(2));
+		assertThat(daveMailbox.receive(), is(3));
+
+		carol.stop();
+		assertThat(carol.isRunning(), is(false));
+		while (dave.isRunning());	// spinlock that waits for the other thread
+		serverSocket.close();
+	}
+
+	@Test
+	public void windowTest() throws IOException, InterruptedException {
+		// dave acknowledges a letter once its recipient has taken it
+		final Semaphore gate = new Semaphore(0);
+		final BlockingQueue<Integer> received = new LinkedBlockingQueue<>();
+		Recipient<Integer> recipient = new SimpleRecipient<Integer>() {
+			@Override
+			public void accept(Integer letter, Postman from) {
+				gate.acquireUninterruptibly();
+				received.add(letter);
+			}
+		};
+
+		Socket[] twin = SocketTwin.create();
+		Postman<Integer> dave = new SequentialPostman<>();
+		dave.use(new GsonSerializer<>(Integer.class));
+		dave.register(recipient);
+		dave.bind(twin[0]).start();
+
+		final Postman<Integer> carol = createPostman();
+		carol.use(new GsonSerializer<>(Integer.class));
+		carol.acknowledge(2);
+		carol.bind(twin[1]).start();
+
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 4; i++)
+					carol.send(i);
+			}
+		};
+		producer.start();
+
+		// the window is full until dave's recipient makes progress
+		producer.join(100);
+		assertThat(producer.isAlive(), is(true));
+
+		gate.release(4);
+		producer.join();
+		for (int i = 0; i < 4; i++)
+			assertThat(received.take(), is(i));
+
+		carol.stop();
+		while (dave.isRunning());	// spinlock that waits for the other thread
+	}
+
+	@Test
+	public void conflateTest() throws InterruptedException {
+		setup();
+
+		Mailbox<Integer> aliceMailbox = new Mailbox<>();
+		alice.register(aliceMailbox);
+
+		bob.conflate(new Classifier<Integer, Integer>() {
+			@Override
+			public Integer classify(Integer letter) {
+				return letter % 3;
+			}
+		});
+
+		// bob is not running yet, so only the latest letter per key waits in the outbox
+		for (int i = 0; i < 9; i++)
+			bob.send(i);
+
+		alice.start();
+		bob.start();
+
+		Set<Integer> received = new HashSet<>();
+		for (int i = 0; i < 3; i++)
+			received.add(aliceMailbox.receive());
+		assertThat(received, is((Set<Integer>) new HashSet<>(Arrays.asList(6, 7, 8))));
+
+		bob.send(9);
+		assertThat(aliceMailbox.receive(), is(9));
+	}
+
+	@Test
+	public void routeTest() throws InterruptedException {
+		setup();
+
+		Mailbox<Integer> everything = new Mailbox<>();
+		Mailbox<Integer> zeros = new Mailbox<>();
+		Mailbox<Integer> ones = new Mailbox<>();
+		alice.register(everything);
+		alice.register(zeros, 0);
+		alice.register(ones, 1);
+		alice.route(new Classifier<Integer, Integer>() {
+			@Override
+			public Integer classify(Integer letter) {
+				return letter % 3;
+			}
+		});
+		alice.start();
+		bob.start();
+
+		for (int i = 0; i < 6; i++)
+			bob.send(i);
+
+		Set<Integer> received = new HashSet<>();
+		for (int i = 0; i < 6; i++)
+			received.add(everything.receive());
+		assertThat(received, is((Set<Integer>) new HashSet<>(Arrays.asList(0, 1, 2, 3, 4, 5))));
+
+		// a letter with the key 2 has no recipient but the one without a key
+		received.clear();
+		received.add(zeros.receive());
+		received.add(zeros.receive());
+		received.add(ones.receive());
+		received.add(ones.receive());
+		assertThat(received, is((Set<Integer>) new HashSet<>(Arrays.asList(0, 1, 3, 4))));
+		assertThat(zeros.receive(50, TimeUnit.MILLISECONDS), is(nullValue()));
+		assertThat(ones.poll(), is(nullValue()));
+	}
+
+	@Test
+	public void charsetTest() throws IOException, InterruptedException {
+		Socket[] twin = SocketTwin.create();
+
+		Mailbox<String> daveMailbox = new Mailbox<>();
+		Postman<String> dave = createPostman();
+		dave.use(new GsonSerializer<>(String.class));
+		dave.use(StandardCharsets.UTF_16);
+		dave.register(daveMailbox);
+		dave.bind(twin[0]).start();
+
+		Postman<String> carol = createPostman();
+		carol.use(new GsonSerializer<>(String.class));
+		carol.use(StandardCharsets.UTF_16);
+		carol.bind(twin[1]).start();
+
+		carol.send("Grüße \uD83D\uDE00");
+		assertThat(daveMailbox.receive(), is("Grüße \uD83D\uDE00"));
+
+		carol.stop();
+		while (dave.isRunning());	// spinlock that waits for the other thread
+	}
+
+	@Test
+	public void bufferPoolTest() throws IOException, InterruptedException {
+		Socket[] twin = SocketTwin.create();
+		BufferPool pool = new BufferPool(16, 4);
+
+		Mailbox<String> daveMailbox = new Mailbox<>();
+		Postman<String> dave = createPostman();
+		dave.use(new GsonSerializer<>(String.class));
+		dave.use(pool);
+		dave.register(daveMailbox);
+		dave.bind(twin[0]).start();
+
+		Postman<String> carol = createPostman();
+		carol.use(new GsonSerializer<>(String.class));
+		carol.use(pool);
+		carol.bind(twin[1]).start();
+
+		// letters that are longer than a buffer
+		String letter = "a letter that does not fit into a single buffer: äöü €";
+		Set<String> expected = new HashSet<>();
+		for (int i = 0; i < 10; i++) {
+			carol.send(letter + i);
+			expected.add(letter + i);
+		}
+
+		// some postmen deliver in any order
+		Set<String> received = new HashSet<>();
+		for (int i = 0; i < 10; i++)
+			received.add(daveMailbox.receive());
+		assertThat(received, is(expected));
+
+		carol.stop();
+		while (dave.isRunning());	// spinlock that waits for the other thread
+
+		// the buffers were given back: at most one per postman and direction was needed
+		assertThat(pool.pooled() > 0 && pool.pooled() <= 4, is(true));
+	}
+
 	@Test
 	public void nullSendTest() {
 		setupStart();
@@ -0,0 +1,81 @@
+package de.teiesti.postie;
+
+import de.teiesti.postie.recipients.Mailbox;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Compares a {@link RecipientRegistry} against a {@link CopyOnWriteArraySet}, which held the {@link Recipient}s of a
+ * {@link Postman} before. The churn benchmark registers and unregisters short-lived {@link Recipient}s while many
+ * others are registered and a letter is delivered now and then. The iteration benchmark delivers letters to a fixed
+ * set of {@link Recipient}s. This is no test. Run it by hand:
+ * <pre>
+ *     java de.teiesti.postie.RecipientRegistryBenchmark [recipients] [operations]
+ * </pre>
+ */
+public class RecipientRegistryBenchmark {
+
+	private static final int ROUNDS = 5;
+	// the number of registrations per delivery in the churn benchmark
+	private static final int CHURN = 16;
+
+	private static volatile int sink;
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int operations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			// the first rounds warm up
+			report("churn", "copy-on-write", round, churn(new CopyOnWriteArraySet<Recipient<Integer>>(), size,
+					operations), operations);
+			report("churn", "registry", round, churn(new RecipientRegistry<Integer>(), size, operations),
+					operations);
+			report("iteration", "copy-on-write", round, iterate(new CopyOnWriteArraySet<Recipient<Integer>>(), size,
+					operations / 10), operations / 10);
+			report("iteration", "registry", round, iterate(new RecipientRegistry<Integer>(), size,
+					operations / 10), operations / 10);
+		}
+	}
+
+	private static long churn(Set<Recipient<Integer>> recipients, int size, int operations) {
+		fill(recipients, size);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			Recipient<Integer> r = new Mailbox<>();
+			recipients.add(r);
+			recipients.remove(r);
+			if (i % CHURN == 0) deliver(recipients);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long iterate(Set<Recipient<Integer>> recipients, int size, int letters) {
+		fill(recipients, size);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < letters; i++)
+			deliver(recipients);
+		return System.nanoTime() - start;
+	}
+
+	private static void fill(Set<Recipient<Integer>> recipients, int size) {
+		for (int i = 0; i < size; i++)
+			recipients.add(new Mailbox<Integer>());
+	}
+
+	private static void deliver(Set<Recipient<Integer>> recipients) {
+		int n = 0;
+		for (Recipient<Integer> r : recipients)
+			n += r.hashCode();
+		sink = n;
+	}
+
+	private static void report(String benchmark, String set, int round, long nanos, int operations) {
+		System.out.printf("%-10s %-14s round %d  %12.0f operations/s%n", benchmark, set, round,
+				operations * 1e9 / nanos);
+	}
+
+}
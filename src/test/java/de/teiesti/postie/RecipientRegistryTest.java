@@ -0,0 +1,127 @@
+package de.teiesti.postie;
+
+import de.teiesti.postie.recipients.Mailbox;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RecipientRegistryTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	private RecipientRegistry<Integer> registry;
+	private Recipient<Integer>[] recipients;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		registry = new RecipientRegistry<>();
+		recipients = new Recipient[10];
+		for (int i = 0; i < recipients.length; i++)
+			recipients[i] = new Mailbox<>();
+	}
+
+	@Test
+	public void addRemoveTest() {
+		for (Recipient<Integer> r : recipients)
+			assertThat(registry.add(r), is(true));
+		assertThat(registry.add(recipients[0]), is(false));
+		assertThat(registry.size(), is(recipients.length));
+
+		assertThat(registry.remove(recipients[0]), is(true));
+		assertThat(registry.remove(recipients[0]), is(false));
+		assertThat(registry.contains(recipients[0]), is(false));
+		assertThat(registry.contains(recipients[1]), is(true));
+		assertThat(registry.contains(null), is(false));
+		assertThat(registry.size(), is(recipients.length - 1));
+
+		registry.clear();
+		assertThat(registry.isEmpty(), is(true));
+		assertThat(registry.iterator().hasNext(), is(false));
+	}
+
+	@Test
+	public void snapshotTest() {
+		registry.addAll(Arrays.asList(recipients));
+
+		// an unchanged registry is iterated without building a new snapshot
+		Recipient[] snapshot = registry.snapshot();
+		assertThat(registry.snapshot() == snapshot, is(true));
+
+		registry.remove(recipients[0]);
+		assertThat(registry.snapshot() == snapshot, is(false));
+		assertThat(registry.snapshot().length, is(recipients.length - 1));
+	}
+
+	@Test
+	public void orderTest() {
+		for (int i = recipients.length - 1; i >= 0; i--)
+			registry.add(recipients[i]);
+		registry.remove(recipients[5]);
+		registry.add(recipients[5]);
+
+		// the recipients are iterated in the order they were added
+		int i = 0;
+		Recipient[] expected = new Recipient[recipients.length];
+		for (int j = recipients.length - 1; j >= 0; j--)
+			if (j != 5) expected[i++] = recipients[j];
+		expected[i] = recipients[5];
+		assertThat(registry.snapshot(), is(expected));
+	}
+
+	@Test
+	public void iterationTest() {
+		registry.addAll(Arrays.asList(recipients));
+
+		// an iteration sees the recipients it started with
+		Set<Recipient<Integer>> seen = new HashSet<>();
+		for (Recipient<Integer> r : registry) {
+			registry.remove(r);
+			seen.add(r);
+		}
+		assertThat(seen, is((Set<Recipient<Integer>>) new HashSet<>(Arrays.asList(recipients))));
+		assertThat(registry.isEmpty(), is(true));
+
+		registry.addAll(Arrays.asList(recipients));
+		Iterator<Recipient<Integer>> i = registry.iterator();
+		i.next();
+		i.remove();
+		assertThat(registry.size(), is(recipients.length - 1));
+	}
+
+	@Test
+	public void concurrentTest() throws InterruptedException {
+		final RecipientRegistry<Integer> registry = this.registry;
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						Recipient<Integer> r = new Mailbox<>();
+						registry.add(r);
+						for (Recipient<Integer> ignored : registry);
+						registry.remove(r);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+
+		assertThat(registry.isEmpty(), is(true));
+		assertThat(registry.snapshot().length, is(0));
+	}
+
+}
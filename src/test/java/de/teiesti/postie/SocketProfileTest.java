@@ -0,0 +1,91 @@
+package de.teiesti.postie;
+
+import de.teiesti.postie.postmen.SequentialPostman;
+import de.teiesti.postie.serializers.GsonSerializer;
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SocketProfileTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Test
+	public void socketTest() throws IOException {
+		Socket socket = new Socket();
+
+		SocketProfile.latency().linger(3).applyTo(socket);
+		assertThat(socket.getTcpNoDelay(), is(true));
+		assertThat(socket.getKeepAlive(), is(true));
+		assertThat(socket.getSoLinger(), is(3));
+
+		new SocketProfile().noDelay(false).linger(-1).applyTo(socket);
+		assertThat(socket.getTcpNoDelay(), is(false));
+		assertThat(socket.getKeepAlive(), is(true));	// not touched
+		assertThat(socket.getSoLinger(), is(-1));
+
+		socket.close();
+	}
+
+	@Test
+	public void channelTest() throws IOException {
+		SocketChannel channel = SocketChannel.open();
+
+		SocketProfile.latency().applyTo(channel);
+		assertThat(channel.getOption(StandardSocketOptions.TCP_NODELAY), is(true));
+		assertThat(channel.getOption(StandardSocketOptions.SO_KEEPALIVE), is(true));
+
+		channel.close();
+	}
+
+	@Test
+	public void illegalTest() {
+		try {
+			new SocketProfile().sendBufferSize(0);
+			fail();
+		} catch (IllegalArgumentException e) {}
+
+		try {
+			new SocketProfile().trafficClass(256);
+			fail();
+		} catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void postmanTest() throws IOException, InterruptedException {
+		Postman<Integer> alice = new SequentialPostman<>();
+		Postman<Integer> bob = new SequentialPostman<>();
+		alice.use(new GsonSerializer<>(Integer.class));
+		bob.use(new GsonSerializer<>(Integer.class));
+
+		Socket[] twin = SocketTwin.create();
+		twin[0].setTcpNoDelay(false);
+
+		// the profile is applied on start, even if it was configured after binding
+		alice.bind(twin[0]).tune(SocketProfile.latency());
+		bob.bind(twin[1]);
+		assertThat(twin[0].getTcpNoDelay(), is(false));
+
+		alice.start();
+		bob.start();
+		assertThat(twin[0].getTcpNoDelay(), is(true));
+
+		try {
+			alice.tune(null);
+			fail();
+		} catch (IllegalStateException e) {}
+
+		alice.stop();
+		while (bob.isRunning());	// spinlock that waits for the other thread
+	}
+
+}
@@ -33,6 +33,8 @@ class SocketTwin {
 		public void run() {
 			try {
 				socket = serverSocket.accept();
+				// the port must not stay in use until the garbage collector closes the server socket
+				serverSocket.close();
 			} catch (IOException e) {
 				this.e = e;
 			}
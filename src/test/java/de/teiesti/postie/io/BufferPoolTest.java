@@ -0,0 +1,54 @@
+package de.teiesti.postie.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BufferPoolTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Test
+	public void borrowTest() {
+		BufferPool pool = new BufferPool(16, 1);
+
+		ByteBuffer first = pool.borrow();
+		assertThat(first.capacity(), is(16));
+		first.put((byte) 42);
+		pool.release(first);
+		assertThat(pool.pooled(), is(1));
+
+		// a buffer that is given back is lent again, cleared
+		ByteBuffer second = pool.borrow();
+		assertThat(second, is(sameInstance(first)));
+		assertThat(second.position(), is(0));
+		assertThat(second.remaining(), is(16));
+		assertThat(pool.pooled(), is(0));
+
+		assertThat(pool.borrow(), is(not(sameInstance(first))));
+	}
+
+	@Test
+	public void capacityTest() {
+		BufferPool pool = new BufferPool(16, 2);
+
+		for (int i = 0; i < 3; i++)
+			pool.release(ByteBuffer.allocate(16));
+		assertThat(pool.pooled(), is(2));
+
+		try {
+			pool.release(ByteBuffer.allocate(17));
+			fail();
+		} catch (IllegalArgumentException e) {}
+	}
+
+}
@@ -0,0 +1,137 @@
+package de.teiesti.postie.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FrameReaderTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	private static FrameReader reader(String text, Charset charset, int bufferSize) {
+		// a stream that returns few bytes at once makes frames span buffers
+		InputStream in = new ByteArrayInputStream(text.getBytes(charset)) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 5));
+			}
+		};
+		return new FrameReader(in, charset, bufferSize);
+	}
+
+	@Test
+	public void readFrameTest() throws IOException {
+		String longFrame = "{\"text\":\"a frame that is longer than any buffer of this test: äöü €\"}";
+		String text = "first\r\n\r\n" + longFrame + "\r\nGrüße\r\nlast";
+
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16BE }) {
+			for (int bufferSize : new int[] { 16, 17, 8192 }) {
+				FrameReader in = reader(text, charset, bufferSize);
+
+				assertThat(in.readFrame("\r\n"), is("first"));
+				assertThat(in.readFrame("\r\n"), is(""));
+				assertThat(in.readFrame("\r\n"), is(longFrame));
+				assertThat(in.readFrame("\r\n"), is("Grüße"));
+				assertThat(in.readFrame("\r\n"), is("last"));
+				assertThat(in.readFrame("\r\n"), is(nullValue()));
+				assertThat(in.readFrame("\r\n"), is(nullValue()));
+			}
+		}
+	}
+
+	@Test
+	public void separatorTest() throws IOException {
+		// the beginning of the separator occurs within the frames
+		FrameReader in = reader("a--b---c-", StandardCharsets.UTF_8, 16);
+
+		assertThat(in.readFrame("---"), is("a--b"));
+		assertThat(in.readFrame("---"), is("c-"));
+		assertThat(in.readFrame("---"), is(nullValue()));
+
+		// a separator that cannot be searched in the bytes
+		in = reader("one€two€", StandardCharsets.UTF_8, 16);
+
+		assertThat(in.readFrame("€"), is("one"));
+		assertThat(in.readFrame("€"), is("two"));
+		assertThat(in.readFrame("€"), is(nullValue()));
+	}
+
+	@Test
+	public void poolTest() throws IOException {
+		BufferPool pool = new BufferPool(16, 1);
+		String longFrame = "a frame that is longer than any buffer of this test: äöü €";
+		byte[] text = ("first\n" + longFrame + "\nlast\n").getBytes(StandardCharsets.UTF_8);
+
+		FrameReader in = new FrameReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8, pool);
+		assertThat(in.readFrame("\n"), is("first"));
+		assertThat(in.readFrame("\n"), is(longFrame));
+		assertThat(in.readFrame("\n"), is("last"));
+
+		// waiting for the next byte, the reader holds no buffer
+		assertThat(in.readFrame("\n"), is(nullValue()));
+		assertThat(pool.pooled(), is(1));
+	}
+
+	@Test
+	public void poolBulkReadTest() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			text.append("frame ").append(i).append('\n');
+
+		final int[] reads = new int[2];
+		InputStream counting = new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)) {
+			@Override
+			public synchronized int read() {
+				reads[0]++;
+				return super.read();
+			}
+
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				reads[1]++;
+				return super.read(b, off, len);
+			}
+		};
+
+		FrameReader in = new FrameReader(counting, StandardCharsets.UTF_8, new BufferPool(8192, 1));
+		for (int i = 0; i < 1000; i++)
+			assertThat(in.readFrame("\n"), is("frame " + i));
+		assertThat(in.readFrame("\n"), is(nullValue()));
+
+		// the bytes are read in bulk, not byte by byte once the buffer was consumed
+		assertThat(reads[0] + reads[1] < 10, is(true));
+	}
+
+	@Test
+	public void transferTest() throws IOException {
+		// raw bytes that are no valid UTF-8 follow a frame
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		text.write("head\n".getBytes(StandardCharsets.UTF_8));
+		text.write(new byte[] { (byte) 0xFF, (byte) 0xFE, '\n', 0 });
+		text.write("tail\n".getBytes(StandardCharsets.UTF_8));
+
+		FrameReader in = new FrameReader(new ByteArrayInputStream(text.toByteArray()), StandardCharsets.UTF_8, 16);
+		assertThat(in.readFrame("\n"), is("head"));
+
+		ByteArrayOutputStream raw = new ByteArrayOutputStream();
+		assertThat(in.transferTo(Channels.newChannel(raw), 4), is(4L));
+		assertThat(raw.toByteArray(), is(new byte[] { (byte) 0xFF, (byte) 0xFE, '\n', 0 }));
+
+		assertThat(in.readFrame("\n"), is("tail"));
+		assertThat(in.readFrame("\n"), is(nullValue()));
+	}
+
+}
@@ -0,0 +1,112 @@
+package de.teiesti.postie.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FrameWriterTest {
+
+	// ASCII, two and three byte characters, a surrogate pair
+	private static final String[] PIECES = { "{\"a\":1}", "ä", "€", "😀", "x", "\n" };
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	private static String text(int pieces) {
+		Random random = new Random(42);
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < pieces; i++)
+			result.append(PIECES[random.nextInt(PIECES.length)]);
+		return result.toString();
+	}
+
+	private static byte[] write(String text, Charset charset, int bufferSize, int chunk) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FrameWriter writer = new FrameWriter(bytes, charset, bufferSize);
+
+		// chunks may split surrogate pairs
+		for (int i = 0; i < text.length(); i += chunk) {
+			int end = Math.min(i + chunk, text.length());
+			if (i % 2 == 0)
+				writer.write(text, i, end - i);
+			else
+				writer.write(text.toCharArray(), i, end - i);
+		}
+		writer.flush();
+
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void utf8Test() throws IOException {
+		String text = text(1000);
+
+		for (int chunk : new int[] { 1, 3, 7, 1000000 })
+			assertThat(write(text, StandardCharsets.UTF_8, 16, chunk), is(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void otherCharsetTest() throws IOException {
+		String text = text(1000);
+
+		for (Charset charset : Arrays.asList(StandardCharsets.UTF_16BE, StandardCharsets.ISO_8859_1))
+			for (int chunk : new int[] { 1, 3, 1000000 })
+				assertThat(write(text, charset, 16, chunk), is(text.getBytes(charset)));
+	}
+
+	@Test
+	public void loneSurrogateTest() throws IOException {
+		String text = "a\uD83Db\uDE00c";
+
+		assertThat(write(text, StandardCharsets.UTF_8, 16, 1), is(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void poolTest() throws IOException {
+		BufferPool pool = new BufferPool(16, 1);
+		String text = text(100);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		FrameWriter writer = new FrameWriter(bytes, StandardCharsets.UTF_8, pool);
+		writer.write(text);
+		assertThat(pool.pooled(), is(0));
+
+		// a flushed writer holds no buffer
+		writer.flush();
+		assertThat(pool.pooled(), is(1));
+		writer.write(text);
+		writer.flush();
+
+		assertThat(bytes.toByteArray(), is((text + text).getBytes(StandardCharsets.UTF_8)));
+		assertThat(pool.pooled(), is(1));
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		String text = text(1000);
+
+		for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.UTF_16BE)) {
+			byte[] bytes = write(text, charset, 64, 1000000);
+
+			FrameReader reader = new FrameReader(new ByteArrayInputStream(bytes), charset, 64);
+			StringBuilder result = new StringBuilder();
+			char[] buffer = new char[5];
+			for (int n = reader.read(buffer); n != -1; n = reader.read(buffer))
+				result.append(buffer, 0, n);
+
+			assertThat(result.toString(), is(text));
+		}
+	}
+
+}
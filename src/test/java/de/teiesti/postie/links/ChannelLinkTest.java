@@ -0,0 +1,97 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Office;
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.postmen.SequentialPostman;
+import de.teiesti.postie.recipients.Mailbox;
+import de.teiesti.postie.serializers.GsonSerializer;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ChannelLinkTest {
+
+	public static int port = 2099;
+
+	private Office olaf;
+	private Postman<Integer> bob;
+
+	private Mailbox<Integer> aliceMailbox = new Mailbox<>();
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private void setup(ServerSocketChannel serverChannel, SocketAddress address) throws IOException {
+		Postman<Integer> aliceBlueprint = new SequentialPostman<>();
+		aliceBlueprint.use(new GsonSerializer<>(Integer.class));
+		aliceBlueprint.register(aliceMailbox);
+
+		olaf = new Office();
+		olaf.spawn(aliceBlueprint);
+		olaf.bind(serverChannel.bind(address));
+		olaf.start();
+
+		bob = new SequentialPostman<>();
+		bob.use(new GsonSerializer<>(Integer.class));
+		bob.use(new ChannelLink(SocketChannel.open(address)));
+		bob.start();
+	}
+
+	@Test
+	public void tcpTest() throws IOException, InterruptedException {
+		setup(ServerSocketChannel.open(), new InetSocketAddress("localhost", port));
+
+		sendTest();
+	}
+
+	@Test
+	public void unixDomainSocketTest() throws Exception {
+		// Unix domain sockets require Java 16, but this code must compile with Java 7
+		ServerSocketChannel serverChannel;
+		SocketAddress address;
+		try {
+			ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+			serverChannel = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+					.invoke(null, unix);
+			address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+					.getMethod("of", String.class)
+					.invoke(null, folder.getRoot().toPath().resolve("postie.socket").toString());
+		} catch (IllegalArgumentException | ReflectiveOperationException e) {
+			Assume.assumeNoException(e);
+			return;
+		}
+
+		setup(serverChannel, address);
+
+		sendTest();
+	}
+
+	private void sendTest() throws InterruptedException {
+		for (int i = 0; i < 1024; i++)
+			bob.send(i);
+
+		for (int i = 0; i < 1024; i++)
+			assertThat(aliceMailbox.receive(), is(i));
+	}
+
+	@After
+	public void after() {
+		if (bob != null && bob.isRunning()) bob.stop();
+		if (olaf != null && olaf.isRunning()) olaf.stop(true);
+	}
+
+}
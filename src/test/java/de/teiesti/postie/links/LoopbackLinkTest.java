@@ -0,0 +1,99 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.postmen.SequentialPostman;
+import de.teiesti.postie.recipients.Mailbox;
+import de.teiesti.postie.serializers.GsonSerializer;
+import org.junit.*;
+import org.junit.rules.Timeout;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class LoopbackLinkTest {
+
+	private Postman<Object> alice;
+	private Postman<Object> bob;
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Before
+	public void before() {
+		alice = new SequentialPostman<>();
+		bob = new SequentialPostman<>();
+	}
+
+	private void setup(boolean carryLetters) {
+		if (!carryLetters) {
+			alice.use(new GsonSerializer<>(Object.class));
+			bob.use(new GsonSerializer<>(Object.class));
+		}
+
+		LoopbackLink[] pair = LoopbackLink.pair(carryLetters);
+		alice.use(pair[0]);
+		bob.use(pair[1]);
+
+		alice.start();
+		bob.start();
+	}
+
+	@Test
+	public void sendBytesTest() throws InterruptedException {
+		setup(false);
+
+		Mailbox<Object> aliceMailbox = new Mailbox<>();
+		alice.register(aliceMailbox);
+
+		Mailbox<Object> bobMailbox = new Mailbox<>();
+		bob.register(bobMailbox);
+
+		// more letters than the queues can hold
+		for (int i = 0 ; i < 4 * LoopbackLink.CAPACITY; i++) {
+			bob.send("" + i);
+			alice.send("" + -i);
+		}
+
+		for (int i = 0; i < 4 * LoopbackLink.CAPACITY; i++) {
+			assertThat(aliceMailbox.receive(), is((Object) ("" + i)));
+			assertThat(bobMailbox.receive(), is((Object) ("" + -i)));
+		}
+	}
+
+	@Test
+	public void sendLettersTest() throws InterruptedException {
+		setup(true);
+
+		Mailbox<Object> bobMailbox = new Mailbox<>();
+		bob.register(bobMailbox);
+
+		// the letters are passed as they are: they are neither encoded nor copied
+		Object[] letters = new Object[4 * LoopbackLink.CAPACITY];
+		for (int i = 0; i < letters.length; i++) {
+			letters[i] = new Object();
+			alice.send(letters[i]);
+		}
+
+		for (Object letter : letters)
+			assertThat(bobMailbox.receive(), is(sameInstance(letter)));
+	}
+
+	@Test
+	public void stopTest() {
+		setup(true);
+
+		alice.stop();
+
+		assertThat(alice.isRunning(), is(false));
+		while (bob.isRunning());	// spinlock that waits for the other thread
+		assertThat(bob.isRunning(), is(false));
+	}
+
+	@After
+	public void after() {
+		if (alice.isRunning()) alice.stop();
+		if (bob.isRunning()) bob.stop();
+	}
+
+}
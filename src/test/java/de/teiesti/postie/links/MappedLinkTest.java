@@ -0,0 +1,79 @@
+package de.teiesti.postie.links;
+
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.postmen.SequentialPostman;
+import de.teiesti.postie.recipients.Mailbox;
+import de.teiesti.postie.serializers.GsonSerializer;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MappedLinkTest {
+
+	private Postman<Integer> alice;
+	private Postman<Integer> bob;
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void before() throws IOException {
+		alice = new SequentialPostman<>();
+		bob = new SequentialPostman<>();
+
+		alice.use(new GsonSerializer<>(Integer.class));
+		bob.use(new GsonSerializer<>(Integer.class));
+
+		// a small capacity makes the rings wrap around
+		Path file = folder.newFile().toPath();
+		alice.use(MappedLink.create(file, 100));
+		bob.use(MappedLink.open(file));
+
+		alice.start();
+		bob.start();
+	}
+
+	@Test
+	public void sendTest() throws InterruptedException {
+		Mailbox<Integer> aliceMailbox = new Mailbox<>();
+		alice.register(aliceMailbox);
+
+		Mailbox<Integer> bobMailbox = new Mailbox<>();
+		bob.register(bobMailbox);
+
+		for (int i = 0 ; i < 1024; i++) {
+			bob.send(i);
+			alice.send(-i);
+		}
+
+		for (int i = 0; i < 1024; i++) {
+			assertThat(aliceMailbox.receive(), is(i));
+			assertThat(bobMailbox.receive(), is(-i));
+		}
+	}
+
+	@Test
+	public void stopTest() {
+		alice.stop();
+
+		assertThat(alice.isRunning(), is(false));
+		while (bob.isRunning());	// spinlock that waits for the other thread
+		assertThat(bob.isRunning(), is(false));
+	}
+
+	@After
+	public void after() {
+		if (alice.isRunning()) alice.stop();
+		if (bob.isRunning()) bob.stop();
+	}
+
+}
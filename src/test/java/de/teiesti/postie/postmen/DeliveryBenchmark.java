@@ -0,0 +1,97 @@
+package de.teiesti.postie.postmen;
+
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.links.LoopbackLink;
+import de.teiesti.postie.recipients.SimpleRecipient;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the delivery backends of {@link ParallelPostman}: a cached thread pool against a shared
+ * {@link java.util.concurrent.ForkJoinPool} (see {@link ParallelPostman#newDeliveryPool(int)}). Many connections
+ * deliver {@link Integer}s to a {@link de.teiesti.postie.Recipient} that costs little or much time per letter. The
+ * letters are carried by {@link LoopbackLink}s, so nothing but delivery is measured. This is no test. Run it by hand:
+ * <pre>
+ *     java de.teiesti.postie.postmen.DeliveryBenchmark [connections] [letters per connection]
+ * </pre>
+ */
+public class DeliveryBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int letters = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		for (long cost : new long[] { 0, TimeUnit.MICROSECONDS.toNanos(20) }) {
+			for (int round = 0; round < ROUNDS; round++) {
+				// the first rounds warm up
+				ExecutorService cached = Executors.newCachedThreadPool();
+				report("cached", cost, round, run(cached, connections, letters, cost), connections * letters);
+				cached.shutdown();
+
+				ExecutorService forkJoin = ParallelPostman.newDeliveryPool(processors);
+				report("fork-join", cost, round, run(forkJoin, connections, letters, cost), connections * letters);
+				forkJoin.shutdown();
+			}
+		}
+	}
+
+	private static long run(ExecutorService pool, int connections, int letters, final long cost)
+			throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(connections * letters);
+
+		Postman<Integer> blueprint = new ParallelPostman<Integer>().observeLetterOrder(false);
+		((ParallelPostman<Integer>) blueprint).setExecutorService(pool);
+		blueprint.register(new SimpleRecipient<Integer>() {
+			@Override
+			public void accept(Integer letter, Postman from) {
+				work(cost);
+				done.countDown();
+			}
+		});
+
+		Postman[] senders = new Postman[connections];
+		Postman[] receivers = new Postman[connections];
+		for (int i = 0; i < connections; i++) {
+			LoopbackLink[] pair = LoopbackLink.pair(true);
+			try {
+				receivers[i] = blueprint.clone().use(pair[0]).start();
+			} catch (CloneNotSupportedException e) {
+				throw new AssertionError(e);
+			}
+			senders[i] = new SequentialPostman<Integer>().use(pair[1]).start();
+		}
+
+		long start = System.nanoTime();
+		for (int n = 0; n < letters; n++)
+			for (Postman<Integer> sender : senders)
+				sender.send(n);
+		done.await();
+		long result = System.nanoTime() - start;
+
+		for (Postman sender : senders)
+			sender.stop();
+		// a receiver stops as soon as its sender did
+		for (Postman receiver : receivers)
+			while (receiver.isRunning()) Thread.sleep(1);
+
+		return result;
+	}
+
+	// spins instead of sleeping, like a recipient that computes something
+	private static void work(long cost) {
+		long end = System.nanoTime() + cost;
+		while (cost > 0 && System.nanoTime() < end);
+	}
+
+	private static void report(String backend, long cost, int round, long nanos, int letters) {
+		System.out.printf("%-10s cost %6d ns  round %d  %10.0f letters/s%n", backend, cost, round,
+				letters * 1e9 / nanos);
+	}
+
+}
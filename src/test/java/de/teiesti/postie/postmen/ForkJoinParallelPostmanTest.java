@@ -0,0 +1,18 @@
+package de.teiesti.postie.postmen;
+
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.PostmanTest;
+
+import java.util.concurrent.ExecutorService;
+
+public class ForkJoinParallelPostmanTest extends PostmanTest {
+
+	// shared by all postmen like in an office
+	private static final ExecutorService POOL = ParallelPostman.newDeliveryPool(2);
+
+	@Override
+	public <Letter> Postman<Letter> createPostman() {
+		return new ParallelPostman<Letter>().setExecutorService(POOL);
+	}
+
+}
@@ -0,0 +1,117 @@
+package de.teiesti.postie.postmen;
+
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.PostmanTest;
+import de.teiesti.postie.recipients.Mailbox;
+import de.teiesti.postie.serializers.AbstractSerializer;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class ParallelDecodingPostmanTest extends PostmanTest {
+
+	private static ExecutorService decoder = Executors.newFixedThreadPool(4);
+
+	@Override
+	public <Letter> Postman<Letter> createPostman() {
+		Postman<Letter> result = new SequentialPostman<>();
+		result.decodeWith(decoder, true);
+		return result;
+	}
+
+	// decodes every letter that is a multiple of the given number slowly
+	private static AbstractSerializer<Integer> unevenSerializer(final int every, final long millis) {
+		return new AbstractSerializer<Integer>() {
+			@Override
+			public String encode(Integer letter) {
+				return letter.toString();
+			}
+
+			@Override
+			public Integer decode(String letter) {
+				Integer result = Integer.valueOf(letter);
+				if (result % every == 0) {
+					try {
+						Thread.sleep(millis);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return result;
+			}
+
+			@Override
+			public String separator() {
+				return "\n";
+			}
+		};
+	}
+
+	@Test
+	public void unevenOrderTest() throws InterruptedException {
+		setup();
+		alice.use(unevenSerializer(5, 5));
+		bob.use(unevenSerializer(5, 5));
+		Mailbox<Integer> mailbox = new Mailbox<>();
+		alice.register(mailbox);
+		alice.start();
+		bob.start();
+
+		for (int i = 0; i < 50; i++)
+			bob.send(i);
+
+		// a letter that is decoded slowly is not overtaken by the following ones
+		for (int i = 0; i < 50; i++)
+			assertThat(mailbox.receive(), is(i));
+	}
+
+	@Test
+	public void unorderedTest() throws InterruptedException {
+		setup();
+		alice.decodeWith(decoder, false);
+		alice.use(unevenSerializer(100, 200));
+		bob.use(unevenSerializer(100, 200));
+		Mailbox<Integer> mailbox = new Mailbox<>();
+		alice.register(mailbox);
+		alice.start();
+		bob.start();
+
+		Set<Integer> sent = new HashSet<>();
+		for (int i = 0; i < 10; i++) {
+			bob.send(i);
+			sent.add(i);
+		}
+
+		// the first letter takes long to decode, so the others are delivered before
+		Integer first = mailbox.receive();
+		assertThat(first, is(not(0)));
+		assertThat(sent.remove(first), is(true));
+		for (int i = 1; i < 10; i++)
+			assertThat(sent.remove(mailbox.receive()), is(true));
+		assertThat(sent.isEmpty(), is(true));
+	}
+
+	@Test
+	public void rejectedTest() {
+		ExecutorService shutDown = Executors.newSingleThreadExecutor();
+		shutDown.shutdown();
+
+		setup();
+		alice.decodeWith(shutDown, true);
+		alice.start();
+		bob.start();
+
+		// a letter that cannot be decoded fails the connection instead of blocking the receiving thread
+		bob.send(1);
+		while (alice.isRunning());	// spinlock that waits for the other thread
+		while (bob.isRunning());
+	}
+
+}
@@ -0,0 +1,14 @@
+package de.teiesti.postie.postmen;
+
+import de.teiesti.postie.Postman;
+import de.teiesti.postie.PostmanTest;
+
+public class RingPostmanTest extends PostmanTest {
+
+	@Override
+	public <Letter> Postman<Letter> createPostman() {
+		// a small ring makes the receiving thread wait for the recipients
+		return new RingPostman<Letter>().capacity(16);
+	}
+
+}
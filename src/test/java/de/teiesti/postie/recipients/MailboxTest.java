@@ -0,0 +1,86 @@
+package de.teiesti.postie.recipients;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MailboxTest {
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Test
+	public void capacityTest() {
+		try {
+			new Mailbox<Integer>(0);
+			fail();
+		} catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void pollTest() {
+		Mailbox<Integer> mailbox = new Mailbox<>(4);
+		assertThat(mailbox.poll(), is(nullValue()));
+
+		mailbox.accept(1, null);
+		mailbox.accept(2, null);
+		assertThat(mailbox.poll(), is(1));
+		assertThat(mailbox.poll(), is(2));
+		assertThat(mailbox.poll(), is(nullValue()));
+	}
+
+	@Test
+	public void receiveTimeoutTest() throws InterruptedException {
+		Mailbox<Integer> mailbox = new Mailbox<>();
+		assertThat(mailbox.receive(10, TimeUnit.MILLISECONDS), is(nullValue()));
+
+		mailbox.accept(42, null);
+		assertThat(mailbox.receive(10, TimeUnit.MILLISECONDS), is(42));
+	}
+
+	@Test
+	public void drainToTest() {
+		Mailbox<Integer> mailbox = new Mailbox<>(16);
+		for (int i = 0; i < 10; i++)
+			mailbox.accept(i, null);
+
+		List<Integer> letters = new ArrayList<>();
+		assertThat(mailbox.drainTo(letters, 8), is(8));
+		assertThat(mailbox.drainTo(letters, 8), is(2));
+		assertThat(mailbox.drainTo(letters, 8), is(0));
+
+		for (int i = 0; i < 10; i++)
+			assertThat(letters.get(i), is(i));
+	}
+
+	@Test
+	public void backpressureTest() throws InterruptedException {
+		final Mailbox<Integer> mailbox = new Mailbox<>(1);
+		mailbox.accept(1, null);
+
+		Thread postman = new Thread() {
+			@Override
+			public void run() {
+				mailbox.accept(2, null);
+			}
+		};
+		postman.start();
+
+		postman.join(50);
+		assertThat(postman.isAlive(), is(true));	// blocked because the mailbox is full
+
+		assertThat(mailbox.receive(), is(1));
+		postman.join();
+		assertThat(mailbox.receive(), is(2));
+	}
+
+}
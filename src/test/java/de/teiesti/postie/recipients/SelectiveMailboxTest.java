@@ -0,0 +1,155 @@
+package de.teiesti.postie.recipients;
+
+import de.teiesti.postie.Classifier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SelectiveMailboxTest {
+
+	private SelectiveMailbox<Integer, Boolean> mailbox;
+
+	@Rule
+	public Timeout timeout = new Timeout(1000);
+
+	@Before
+	public void before() {
+		// sorts even and odd letters
+		mailbox = new SelectiveMailbox<>(new Classifier<Integer, Boolean>() {
+			@Override
+			public Boolean classify(Integer letter) {
+				return letter % 2 == 0;
+			}
+		});
+	}
+
+	@Test
+	public void receiveTest() throws InterruptedException {
+		for (int i = 0; i < 10; i++)
+			mailbox.accept(i, null);
+
+		for (int i = 0; i < 10; i++)
+			assertThat(mailbox.receive(), is(i));
+
+		assertThat(mailbox.hasLetter(), is(false));
+	}
+
+	@Test
+	public void receiveKeyTest() throws InterruptedException {
+		for (int i = 0; i < 10; i++)
+			mailbox.accept(i, null);
+
+		for (int i = 1; i < 10; i += 2)
+			assertThat(mailbox.receive(false), is(i));
+
+		assertThat(mailbox.hasLetter(false), is(false));
+		assertThat(mailbox.poll(false), is(nullValue()));
+		assertThat(mailbox.receive(false, 10, TimeUnit.MILLISECONDS), is(nullValue()));
+
+		List<Integer> even = new ArrayList<>();
+		assertThat(mailbox.drainTo(true, even, 10), is(5));
+		for (int i = 0; i < 5; i++)
+			assertThat(even.get(i), is(2 * i));
+	}
+
+	@Test
+	public void receiveFilterTest() throws InterruptedException {
+		for (int i = 0; i < 10; i++)
+			mailbox.accept(i, null);
+
+		Filter<Integer> big = new Filter<Integer>() {
+			@Override
+			public boolean matches(Integer letter) {
+				return letter > 6;
+			}
+		};
+
+		assertThat(mailbox.receive(big), is(7));
+		assertThat(mailbox.receive(big), is(8));
+		assertThat(mailbox.receive(big), is(9));
+		assertThat(mailbox.receive(), is(0));
+	}
+
+	@Test
+	public void pruneTest() throws InterruptedException {
+		// a key per letter, like a correlation id
+		final SelectiveMailbox<Integer, Integer> ids = new SelectiveMailbox<>(new Classifier<Integer, Integer>() {
+			@Override
+			public Integer classify(Integer letter) {
+				return letter;
+			}
+		});
+
+		for (int i = 0; i < 1000; i++)
+			ids.accept(i, null);
+		assertThat(ids.keys(), is(1000));
+
+		for (int i = 0; i < 1000; i += 4) {
+			assertThat(ids.receive(i), is(i));
+			assertThat(ids.receive(i + 1, 10, TimeUnit.MILLISECONDS), is(i + 1));
+			assertThat(ids.poll(i + 2), is(i + 2));
+		}
+		assertThat(ids.receive(), is(3));
+		assertThat(ids.drainTo(7, new ArrayList<Integer>(), 10), is(1));
+		assertThat(ids.keys(), is(248));
+
+		// asking for a key that never comes does not keep a queue either
+		for (int i = 1000; i < 1010; i++)
+			assertThat(ids.receive(i, 0, TimeUnit.MILLISECONDS), is(nullValue()));
+		assertThat(ids.keys(), is(248));
+
+		// but a waiting receiver keeps its queue
+		final List<Integer> received = new ArrayList<>();
+		Thread receiver = new Thread() {
+			@Override
+			public void run() {
+				try {
+					received.add(ids.receive(2000));
+				} catch (InterruptedException e) {
+					// test fails with an empty list
+				}
+			}
+		};
+		receiver.start();
+		while (ids.keys() == 248);	// spinlock that waits for the other thread
+		ids.accept(2000, null);
+		receiver.join();
+
+		assertThat(received.get(0), is(2000));
+		assertThat(ids.keys(), is(248));
+	}
+
+	@Test
+	public void waitingReceiverTest() throws InterruptedException {
+		final List<Integer> received = new ArrayList<>();
+
+		Thread oddReceiver = new Thread() {
+			@Override
+			public void run() {
+				try {
+					received.add(mailbox.receive(false));
+				} catch (InterruptedException e) {
+					// test fails with an empty list
+				}
+			}
+		};
+		oddReceiver.start();
+
+		mailbox.accept(2, null);
+		mailbox.accept(3, null);
+		oddReceiver.join();
+
+		assertThat(received.get(0), is(3));
+		assertThat(mailbox.receive(), is(2));
+	}
+
+}
@@ -0,0 +1,203 @@
+package de.teiesti.postie.serializers;
+
+import de.teiesti.postie.io.FrameReader;
+import de.teiesti.postie.io.FrameWriter;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class AbstractSerializerTest {
+
+	private static final int LETTERS = 10000;
+
+	private AbstractSerializer<String> serializer;
+
+	@Rule
+	public Timeout timeout = new Timeout(5000);
+
+	@Before
+	public void before() {
+		// encodes and decodes without any work, so that only the framing remains
+		serializer = new AbstractSerializer<String>() {
+			@Override
+			public String encode(String letter) {
+				return letter;
+			}
+
+			@Override
+			public String decode(String letter) {
+				return letter;
+			}
+
+			@Override
+			public String separator() {
+				return "\r\n";
+			}
+		};
+	}
+
+	private static FrameReader reader(String text) {
+		return new FrameReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+				8192);
+	}
+
+	@Test
+	public void readNextTest() throws IOException {
+		FrameReader in = reader("first\r\nsecond\r\n\r\nlast");
+
+		assertThat(serializer.readNext(in), is("first"));
+		assertThat(serializer.readNext(in), is("second"));
+		assertThat(serializer.readNext(in), is(""));
+		assertThat(serializer.readNext(in), is("last"));
+		assertThat(serializer.readNext(in), is(nullValue()));
+	}
+
+	// resolved once, so that looking it up is not counted as an allocation of the code under test
+	private static final Object THREADS = ManagementFactory.getThreadMXBean();
+	private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+	private static Method allocatedBytesMethod() {
+		try {
+			return Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	// returns the bytes the current thread has allocated so far or -1 if the JVM does not tell
+	private static long allocatedBytes() {
+		if (ALLOCATED_BYTES == null)
+			return -1;
+
+		try {
+			return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return -1;
+		}
+	}
+
+	// returns the bytes the current thread allocates while running the given code or -1 if the JVM does not tell
+	private static long allocatedBytes(Runnable code) {
+		// the first calls of the probe may allocate on their own, e.g. to set up reflection
+		for (int i = 0; i < 3; i++)
+			allocatedBytes();
+		long start = allocatedBytes();
+		long probe = allocatedBytes() - start;
+
+		long before = allocatedBytes();
+		if (before == -1)
+			return -1;
+		code.run();
+		// the probe's own allocation is not counted
+		return Math.max(allocatedBytes() - before - probe, 0);
+	}
+
+	@Test
+	public void readAllocationTest() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2 * LETTERS; i++)
+			text.append(10000 + i).append("\r\n");
+		final FrameReader in = reader(text.toString());
+
+		// warm up
+		for (int i = 0; i < LETTERS; i++)
+			serializer.readNext(in);
+
+		long allocated = allocatedBytes(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < LETTERS; i++)
+						serializer.readNext(in);
+				} catch (IOException e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+		Assume.assumeTrue(allocated != -1);
+		long perLetter = allocated / LETTERS;
+
+		// nothing but the resulting string of five characters: its header and its array, which take 48 bytes with
+		// compact strings and 56 bytes without, so any further object of at least 16 bytes is caught
+		assertThat("allocated " + perLetter + " bytes per letter", perLetter < 64, is(true));
+	}
+
+	@Test
+	public void plainReadAllocationTest() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2 * LETTERS; i++)
+			text.append(10000 + i).append("\r\n");
+		// not a frame reader, so the serializer searches the separator on its own
+		final Reader in = new StringReader(text.toString());
+
+		// warm up
+		for (int i = 0; i < LETTERS; i++)
+			serializer.readNext(in);
+
+		long allocated = allocatedBytes(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < LETTERS; i++)
+						serializer.readNext(in);
+				} catch (IOException e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+		Assume.assumeTrue(allocated != -1);
+		long perLetter = allocated / LETTERS;
+
+		// the same as with a frame reader: the state of the reading thread is reused
+		assertThat("allocated " + perLetter + " bytes per letter", perLetter < 64, is(true));
+	}
+
+	@Test
+	public void writeAllocationTest() throws IOException {
+		OutputStream nowhere = new OutputStream() {
+			@Override
+			public void write(int b) {}
+
+			@Override
+			public void write(byte[] b, int off, int len) {}
+		};
+		final FrameWriter out = new FrameWriter(nowhere, StandardCharsets.UTF_8, 8192);
+
+		// warm up
+		for (int i = 0; i < LETTERS; i++)
+			serializer.encodeNext(out, "{\"value\":42}");
+
+		long allocated = allocatedBytes(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < LETTERS; i++)
+						serializer.encodeNext(out, "{\"value\":42}");
+				} catch (IOException e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+		Assume.assumeTrue(allocated != -1);
+		long perLetter = allocated / LETTERS;
+
+		// not a single object per letter: even the smallest one takes 16 bytes
+		assertThat("allocated " + perLetter + " bytes per letter", perLetter < 16, is(true));
+	}
+
+}